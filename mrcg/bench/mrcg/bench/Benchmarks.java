@@ -0,0 +1,37 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are reported
+ * next to throughput: <code>Benchmarks [jmh options] [benchmark regexp]</code>,
+ * e.g. <code>Benchmarks -p beans=1000 Sql</code>.  Needs the jars from
+ * mrcg-resources/lib on the classpath, with annotation processing enabled for
+ * jmh-generator-annprocess (see .factorypath).
+ */
+public class Benchmarks {
+	public static void main(String...args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build()
+		).run();
+	}
+}
\ No newline at end of file
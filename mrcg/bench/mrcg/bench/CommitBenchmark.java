@@ -0,0 +1,69 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import mrcg.output.DirectorySink;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Committing every bean's source into an empty project directory.  Staging the
+ * files happens before each invocation, only the commit is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class CommitBenchmark {
+	private File directory;
+	private DirectorySink sink;
+
+	@Setup(Level.Invocation)
+	public void setUp(SchemaState schema) throws Exception {
+		directory = SyntheticSchema.createDirectory();
+		sink = new DirectorySink(directory);
+		for(Map.Entry<String, byte[]> source : schema.sources.entrySet()) {
+			sink.write(source.getKey(), source.getValue());
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	@Benchmark
+	public int commit() throws Exception {
+		return sink.close();
+	}
+}
\ No newline at end of file
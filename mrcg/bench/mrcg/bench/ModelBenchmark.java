@@ -0,0 +1,70 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import mrcg.MRCGInstance;
+import mrcg.domain.JavaClass;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the model (establishTypes, createEnums, createBeans) from a definition
+ * that is already parsed; the instance's loader keeps the parse between invocations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+	private MRCGInstance instance;
+	private PrintStream out;
+
+	@Setup(Level.Trial)
+	public void setUp(SchemaState schema) throws Exception {
+		instance = new MRCGInstance(schema.definition.getAbsolutePath());
+		instance.buildModel();
+		// createBeans reports every bean, keep that out of the measurement
+		out = System.out;
+		System.setOut(new PrintStream(new NullOutputStream()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	@Benchmark
+	public Map<String, JavaClass> buildModel() throws Exception {
+		return instance.buildModel();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mrcg.MRCGInstance;
+import mrcg.domain.JavaClass;
+import mrcg.utils.Emitter;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic definition with its model built and its beans rendered, so each
+ * benchmark only measures its own phase.
+ */
+@State(Scope.Benchmark)
+public class SchemaState {
+	@Param({"10", "100", "1000", "10000"})
+	public int beans;
+
+	public File directory;
+	public File definition;
+	public Map<String, JavaClass> types;
+	/** The rendered source of every bean, by path. */
+	public Map<String, byte[]> sources;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		directory = SyntheticSchema.createDirectory();
+		definition = SyntheticSchema.write(beans, directory);
+		types = new MRCGInstance(definition.getAbsolutePath()).buildModel();
+
+		sources = new LinkedHashMap<String, byte[]>();
+		Emitter out = new Emitter();
+		for(JavaClass jclass : types.values()) {
+			jclass.out(out.reset());
+			sources.put("src/" + jclass.getCompleteName().replace('.', '/') + ".java", out.toBytes());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+}
\ No newline at end of file
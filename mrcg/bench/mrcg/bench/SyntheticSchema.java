@@ -0,0 +1,114 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Writes definition files of any size for the benchmarks.  Beans get a mix of
+ * every field type, options, indexes and references to earlier beans and to
+ * enums; there is one enum for every ten beans.  The same size always gives
+ * the same definition.
+ */
+public class SyntheticSchema {
+	private static final String[] TYPES = {
+		"string(1-50)", "text", "int", "long", "double", "numeric(8-2)", "money",
+		"date", "justdate", "boolean", "time", "email(1-100)"
+	};
+	private static final String[] OPTIONS = {"list", "null", "unique", "index", "noview"};
+
+	/** @return the definition of a project with <code>beans</code> beans */
+	public static String generate(int beans, File projectPath) {
+		Random random = new Random(beans);
+		int enums = Math.max(1, beans / 10);
+		StringBuilder b = new StringBuilder();
+
+		b.append("config:\n");
+		b.append("    projectpath: ").append(projectPath.getAbsolutePath()).append("/\n");
+		b.append("    projectname: synthetic\n");
+		b.append("    basepackage: com.example.synthetic\n");
+		b.append("    libraryPackage: com.example.library\n");
+		b.append("    logicsPackage: com.example.synthetic.logic\n");
+		b.append("    logicFacade: com.example.synthetic.logic.Facade\n");
+		b.append("    beanInterface: com.example.library.bean.AbstractBean\n");
+		b.append("    tagLibPrefix: s\n");
+		b.append("    skipdatabase: true\n");
+		b.append("database:\n");
+		b.append("    name: synthetic\n");
+		b.append("    type: postgresql\n");
+
+		b.append("enums:\n");
+		for(int i = 0; i < enums; i++) {
+			b.append("    Kind").append(i).append(":\n");
+			int values = 2 + random.nextInt(5);
+			boolean map = random.nextBoolean();
+			for(int v = 0; v < values; v++) {
+				if (map) {
+					b.append("        K").append(v).append(": Kind Value ").append(v).append("\n");
+				} else {
+					b.append("        - value").append(v).append("\n");
+				}
+			}
+		}
+
+		b.append("beans:\n");
+		for(int i = 0; i < beans; i++) {
+			b.append("    Bean").append(i).append(":\n");
+			b.append("        fields:\n");
+			b.append("            name: string(1-100) list identifier\n");
+			int fields = 4 + random.nextInt(16);
+			for(int f = 0; f < fields; f++) {
+				b.append("            field").append(f).append(": ").append(TYPES[random.nextInt(TYPES.length)]);
+				if (random.nextInt(3) == 0) {
+					b.append(' ').append(OPTIONS[random.nextInt(OPTIONS.length)]);
+				}
+				b.append("\n");
+			}
+			if (i > 0) {
+				int references = 1 + random.nextInt(3);
+				for(int r = 0; r < references; r++) {
+					b.append("            parent").append(r).append(": references Bean").append(random.nextInt(i)).append("\n");
+				}
+			}
+			b.append("            kind: references Kind").append(random.nextInt(enums)).append(" list\n");
+			if (random.nextInt(4) == 0) {
+				b.append("        indexes:\n");
+				b.append("            byName:\n");
+				b.append("                - name\n");
+				b.append("                - field0\n");
+			}
+		}
+		return b.toString();
+	}
+
+	/** Writes a definition with <code>beans</code> beans, generating into <code>directory</code>. */
+	public static File write(int beans, File directory) throws IOException {
+		File definition = new File(directory, "synthetic-" + beans + ".yml");
+		FileUtils.writeStringToFile(definition, generate(beans, new File(directory, "project")), "UTF-8");
+		return definition;
+	}
+
+	/** A new, empty temporary directory. */
+	public static File createDirectory() throws IOException {
+		File directory = File.createTempFile("mrcg-bench", "");
+		directory.delete();
+		directory.mkdirs();
+		return directory;
+	}
+}
\ No newline at end of file
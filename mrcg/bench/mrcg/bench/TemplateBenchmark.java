@@ -0,0 +1,83 @@
+package mrcg.bench;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import mrcg.domain.JavaClass;
+import mrcg.utils.TemplateRegistry;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rendering an edit page for every bean through the {@link TemplateRegistry}.
+ * The template is compiled once, as it is during generation; the project's own
+ * templates live in mrcg-resources, this one is shaped like edit-layout-jsp.vel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+	private static final String TEMPLATE =
+		"<%@ include file=\"/WEB-INF/jsp/taglibs.jsp\" %>\n" +
+		"<h1>Edit ${classUpperSpaced}</h1>\n" +
+		"<${tagLibPrefix}:form beanclass=\"${basePackage}.gui.admin.action.${classLower}.Edit${classUpper}Action\">\n" +
+		"#foreach($field in $fields)\n" +
+		"\t<${tagLibPrefix}:label for=\"${classLowerCamel}.${field.name}\">${field.label}</${tagLibPrefix}:label>\n" +
+		"\t<${tagLibPrefix}:text name=\"${classLowerCamel}.${field.name}\"#if($field.required) class=\"required\"#end/>\n" +
+		"#end\n" +
+		"</${tagLibPrefix}:form>\n";
+
+	private TemplateRegistry templates;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		templates = new TemplateRegistry();
+		templates.getTemplate(TEMPLATE);
+	}
+
+	@Benchmark
+	public void render(SchemaState schema, Blackhole blackhole) throws Exception {
+		for(JavaClass jclass : schema.types.values()) {
+			if (jclass.isEnum()) continue;
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("basePackage", "com.example.synthetic");
+			map.put("tagLibPrefix", "s");
+			map.put("classUpper", StringUtils.capitalize(jclass.getName()));
+			map.put("classUpperSpaced", jclass.getSpacedCamelCaseName());
+			map.put("classLower", jclass.getName().toLowerCase());
+			map.put("classLowerCamel", StringUtils.uncapitalize(jclass.getName()));
+			map.put("fields", jclass.getNonAutoHandledInstanceFields());
+			blackhole.consume(templates.merge(TEMPLATE, map));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package mrcg;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mrcg.utils.TemplateRegistry;
+
+/**
+ * Generates projects, several at once if asked to, sharing one template
+ * registry so each template is parsed once per process.  Every project is
+ * generated by its own {@link MRCGInstance}; nothing else is shared, so a
+ * generator may be used from several threads.
+ */
+public class Generator {
+	private final TemplateRegistry templates;
+
+	public Generator() {
+		this(new TemplateRegistry());
+	}
+
+	public Generator(TemplateRegistry templates) {
+		this.templates = templates;
+	}
+
+	public MRCGInstance getInstance(String definitionFile) throws Exception {
+		return new MRCGInstance(definitionFile, templates);
+	}
+
+	public void generate(String definitionFile) throws Exception {
+		getInstance(definitionFile).execute();
+	}
+
+	/**
+	 * Generates each project, <code>threads</code> of them at a time.
+	 * @return why each project that failed did, by definition file
+	 */
+	public Map<String, Exception> generateAll(List<String> definitionFiles, int threads) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, definitionFiles.size())));
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(final String definitionFile : definitionFiles) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						generate(definitionFile);
+						return null;
+					}
+				}));
+			}
+			Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+			for(int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch(ExecutionException e) {
+					failures.put(definitionFiles.get(i), (e.getCause() instanceof Exception)?(Exception)e.getCause():e);
+				}
+			}
+			return failures;
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
\ No newline at end of file
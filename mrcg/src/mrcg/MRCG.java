@@ -0,0 +1,63 @@
+package mrcg;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line entry point: <code>MRCG [--watch] definition.yml</code>.
+ * With <code>--watch</code> the generator stays running and regenerates on every save.
+ * Given several definitions, <code>MRCG [--threads n] a.yml b.yml ...</code>, the
+ * projects are generated concurrently, by default as many as there are processors.
+ */
+public class MRCG {
+	public static final void main(String...args) throws Exception {
+		boolean watch = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> definitionFiles = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			if ("--watch".equals(args[i])) {
+				watch = true;
+			} else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else {
+				definitionFiles.add(args[i]);
+			}
+		}
+		if (definitionFiles.isEmpty() || (watch && definitionFiles.size() > 1)) {
+			System.err.println("usage: MRCG [--watch] definition.yml");
+			System.err.println("       MRCG [--threads n] definition.yml...");
+			System.exit(1);
+		}
+
+		Generator generator = new Generator();
+		if (watch) {
+			generator.getInstance(definitionFiles.get(0)).watch();
+		} else if (definitionFiles.size() == 1) {
+			generator.generate(definitionFiles.get(0));
+		} else {
+			Map<String, Exception> failures = generator.generateAll(definitionFiles, threads);
+			for(Map.Entry<String, Exception> failure : failures.entrySet()) {
+				System.err.println(failure.getKey() + " failed:");
+				failure.getValue().printStackTrace();
+			}
+			if (!failures.isEmpty()) {
+				System.exit(1);
+			}
+		}
+	}
+}
\ No newline at end of file
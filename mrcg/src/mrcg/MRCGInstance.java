@@ -14,42 +14,43 @@ package mrcg;
  * limitations under the License.
  */
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.Reader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
-import org.apache.velocity.app.VelocityEngine;
-import org.ho.yaml.Yaml;
 
+import mrcg.config.BeanConfig;
+import mrcg.config.DefinitionLoader;
+import mrcg.config.EnumConfig;
+import mrcg.config.FieldConfig;
+import mrcg.config.ProjectConfig;
 import mrcg.db.DBScripter;
 import mrcg.db.MySqlScriptifier;
 import mrcg.db.PostgreSqlScriptifier;
+import mrcg.db.SchemaApplier;
+import mrcg.db.SchemaSnapshot;
 import mrcg.domain.DBType;
 import mrcg.domain.Index;
 import mrcg.domain.JavaClass;
@@ -63,9 +64,32 @@ import mrcg.domain.JavaParameter;
 import mrcg.domain.JavaType;
 import mrcg.domain.ListField;
 import mrcg.domain.Visibility;
+import mrcg.output.DirectorySink;
+import mrcg.output.MemorySink;
+import mrcg.output.OutputSink;
+import mrcg.output.ZipSink;
+import mrcg.pipeline.FileWatcher;
+import mrcg.pipeline.Manifest;
+import mrcg.pipeline.Stage;
+import mrcg.pipeline.StageScheduler;
+import mrcg.pipeline.StageScheduler.Task;
+import mrcg.pipeline.Telemetry;
+import mrcg.utils.Emitter;
+import mrcg.utils.Coder;
+import mrcg.utils.Fingerprint;
+import mrcg.utils.JdbcUtils;
+import mrcg.utils.TemplateRegistry;
 import mrcg.utils.Utils;
 
 public class MRCGInstance {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// classes are written from several threads, each reuses its own buffer
+	private static final ThreadLocal<Emitter> EMITTERS = new ThreadLocal<Emitter>() {
+		protected Emitter initialValue() {
+			return new Emitter(16 * 1024);
+		}
+	};
+
 	private static final Map<String, DBScripter> DB_SCRIPTER = new HashMap<String, DBScripter>();
 
 	static {
@@ -73,10 +97,33 @@ public class MRCGInstance {
 		DB_SCRIPTER.put("postgres", new PostgreSqlScriptifier());
 		DB_SCRIPTER.put("postgresql", new PostgreSqlScriptifier());
 	}
-	
+
+	// MySQL binds at most 65535 parameters to a statement, a class file holds strings of at most 65535 bytes
+	private static final int MAX_PARAMETERS = 65535;
+	private static final int MAX_CONSTANT = 65535;
+
+	// kept out of the numbered scripts runall.sh applies, it only makes sense instead of them
+	private static final String MIGRATION_SCRIPT = "migrate/migrate-generated.sql";
+
+	// resources the generation stages read and write
+	private static final String MODEL = "model";
+	private static final String BEAN_SOURCES = "bean-sources";
+	private static final String BASE_ACTION_SOURCES = "base-action-sources";
+	private static final String EDIT_ACTION_SOURCES = "edit-action-sources";
+	private static final String LIST_ACTION_SOURCES = "list-action-sources";
+	private static final String LIST_JSPS = "list-jsps";
+	private static final String EDIT_JSPS = "edit-jsps";
+	private static final String RESOURCE_SOURCES = "resource-sources";
+	private static final String PROJECT_FILES = "project-files";
+	private static final String DATABASE = "database";
+
+	/** Bump whenever a change to the generator alters its output. */
+	private static final String GENERATOR_VERSION = "1";
+
 	private String definitionFile;
 
-	private Map<String, Object> root;
+	private final DefinitionLoader loader = new DefinitionLoader();
+	private ProjectConfig config;
 	
 	
 	private String projectPath;
@@ -84,8 +131,6 @@ public class MRCGInstance {
 	private String webPath;
 	private String basePackage;
 		
-	private boolean reverseReferenceEnabled = true;
-	
 	private String libraryPackage = null;
 	private String logicsPackage = null;
 	private String digester = null;
@@ -97,10 +142,36 @@ public class MRCGInstance {
 	private String tableNameClass;
 	
 	
-	private Map<String, JavaClass> types = new HashMap<String, JavaClass>();
+	// in name order while the model is built, then ordered by reference, see createBeans()
+	private Map<String, JavaClass> types = new LinkedHashMap<String, JavaClass>();
+	
+	private JavaType logicFacade;
+	// beans read and written through their Generated<Bean>Repository rather than the logic facade
+	private Set<String> repositories = new HashSet<String>();
 	
+	private final TemplateRegistry templates;
+
+	private StageScheduler scheduler;
+
+	private String generatorVersion;
+	private Manifest manifest;
+	private OutputSink outputSink;
+	private OutputSink sink;
+	private boolean databaseChanged;
+	// the schema createSQL() built the script for, and the migration to it from the database's, if compatible
+	private SchemaSnapshot schema;
+	private String migration;
+	private Map<JavaClass, String> fingerprints = new IdentityHashMap<JavaClass, String>();
+	private String modelFingerprint;
+	private Telemetry telemetry = new Telemetry();
+
 	public MRCGInstance(String defintionFile) throws Exception {
-		Velocity.init();
+		this(defintionFile, new TemplateRegistry());
+	}
+
+	/** @param templates shared with other instances, generating several projects in one process parses each template once */
+	public MRCGInstance(String defintionFile, TemplateRegistry templates) throws Exception {
+		this.templates = templates;
 		if (defintionFile.startsWith("~")) {
 			defintionFile = defintionFile.replace("~", System.getProperty("user.home"));
 		} else if (!defintionFile.startsWith("/")) {
@@ -113,163 +184,378 @@ public class MRCGInstance {
 		return types.get(type);
 	}
 	
-	public void execute() throws Exception {
-		String contents = IOUtils.toString(new FileReader(definitionFile));
-		contents = contents.replace("\t", "    ");
-		
-	 	root  = (Map<String, Object>)Yaml.load(contents);
-		projectPath = getString("config.projectpath");
-		if (StringUtils.isEmpty(projectPath)) {
-			projectPath = System.getProperty("user.dir") + "/";
-		}		
-		sourcePath = projectPath + "src/";
-		webPath = projectPath + "WebContent/";
-	 	basePackage = getString("config.basepackage");
-	 	
- 		// load library configuration stuff
- 		this.libraryPackage = getString("config.libraryPackage");
- 		this.logicsPackage = getString("config.logicsPackage");
- 		JavaType.LOGIC_FACADE = new JavaType(getString("config.logicFacade"));
- 		this.digester = getString("config.digester");
- 		this.tagLibPrefix = getString("config.tagLibPrefix");
- 		this.tagUtils = getString("config.tagUtils");
- 		this.transactionFilter = getString("config.transactionFilter");
- 		this.exceptionHandler = getString("config.exceptionHandler");
- 		this.tableNameClass = getString("config.tableNameClass");
- 		
- 		
-
-	 	reverseReferenceEnabled = getBoolean("config.reversereference", true);
-			 	
-		establishTypes();
-		createEnums();
-		createBeans();
-		
-		outputTypes();
-		
-		createBaseActions();
-		createEditActions();
-		
-		boolean skipGui = getBoolean("config.skipgui", false);
-		if (!skipGui) {
-			createListActions();
-			createListJSPs();
-//			
+	/** Generates the project.  An instance generates one project at a time, use an instance per project to generate several at once. */
+	public synchronized void execute() throws Exception {
+		configure();
+
+	 	generatorVersion = getGeneratorVersion();
+	 	sink = createOutputSink();
+	 	// the manifest describes what is on disk, outputs going anywhere else are always rendered
+	 	manifest = new Manifest(new File(projectPath + ".mrcg/manifest"), generatorVersion);
+	 	if (sink.getDirectory() != null && config.isIncremental()) {
+	 		manifest.load();
+	 	}
+
+	 	telemetry = new Telemetry();
+	 	scheduler = new StageScheduler(config.getThreads());
+	 	scheduler.setTelemetry(telemetry);
+
+	 	// the model is built serially, after createBeans it is only read
+		scheduler.add(new Stage("establishTypes") {
+			public void run() throws Exception {establishTypes();}
+		}.writes(MODEL));
+		scheduler.add(new Stage("createEnums") {
+			public void run() throws Exception {createEnums();}
+		}.reads(MODEL).writes(MODEL));
+		scheduler.add(new Stage("createBeans") {
+			public void run() throws Exception {createBeans();}
+		}.reads(MODEL).writes(MODEL));
+
+		scheduler.add(new Stage("fingerprintTypes") {
+			public void run() throws Exception {fingerprintTypes();}
+		}.reads(MODEL).writes(MODEL));
+
+		scheduler.add(new Stage("outputTypes") {
+			public void run() throws Exception {outputTypes();}
+		}.reads(MODEL).writes(BEAN_SOURCES));
+
+		scheduler.add(new Stage("createBaseActions") {
+			public void run() throws Exception {createBaseActions();}
+		}.reads(MODEL).writes(BASE_ACTION_SOURCES));
+		scheduler.add(new Stage("createEditActions") {
+			public void run() throws Exception {createEditActions();}
+		}.reads(MODEL).writes(EDIT_ACTION_SOURCES));
+
+		if (!config.isSkipGui()) {
+			scheduler.add(new Stage("createListActions") {
+				public void run() throws Exception {createListActions();}
+			}.reads(MODEL).writes(LIST_ACTION_SOURCES));
+			scheduler.add(new Stage("createListJSPs") {
+				public void run() throws Exception {createListJSPs();}
+			}.reads(MODEL).writes(LIST_JSPS));
+//
 //			createViewActions();
 //			createViewJSPs();
 		}
-		
-		if (!skipGui) {
-			createEditJSPs();
-			createOtherResources();
+
+		if (!config.isSkipGui()) {
+			scheduler.add(new Stage("createEditJSPs") {
+				public void run() throws Exception {createEditJSPs();}
+			}.reads(MODEL).writes(EDIT_JSPS));
+			scheduler.add(new Stage("createOtherResources") {
+				public void run() throws Exception {createOtherResources();}
+			}.writes(RESOURCE_SOURCES));
 		}
 
-		if (getBoolean("config.copyresources", true)) copyResources();
-		
-		createSQL();		
+		// resources are only copied where nothing exists yet, so they wait for everything else that writes files
+		if (config.isCopyResources()) {
+			scheduler.add(new Stage("copyResources") {
+				public void run() throws Exception {copyResources();}
+			}.reads(BEAN_SOURCES, BASE_ACTION_SOURCES, EDIT_ACTION_SOURCES, LIST_ACTION_SOURCES, LIST_JSPS, EDIT_JSPS, RESOURCE_SOURCES)
+			 .writes(PROJECT_FILES));
+		}
+
+		scheduler.add(new Stage("createSQL") {
+			public void run() throws Exception {createSQL();}
+		}.reads(MODEL, PROJECT_FILES).writes(DATABASE));
+
+		scheduler.execute();
+		// nothing reaches the project until every stage has succeeded
+		Telemetry.Probe commit = telemetry.enter("commit", null);
+		try {
+			System.out.println("Committed " + sink.close() + " files");
+		} finally {
+			telemetry.exit(commit);
+		}
+		if (sink.getDirectory() != null) {
+			manifest.save();
+		}
+		telemetry.printSummary(System.out, 10);
+		if (sink.getDirectory() != null && config.isTelemetry()) {
+			telemetry.writeJson(new File(sink.getDirectory(), ".mrcg/telemetry.json"));
+			telemetry.writeCsv(new File(sink.getDirectory(), ".mrcg/telemetry.csv"));
+		}
+		if (databaseChanged) {
+			runDatabaseScript();
+		}
 	}
 	
-	private void copyResources() {
-		File dir = new File(new File(projectPath).getParentFile(), "mrcg-resources/src/to-copy");
-		copyResources(dir, new File(projectPath));		
+	/** Reads the definition and builds the beans and enums it describes, without generating anything. */
+	public synchronized Map<String, JavaClass> buildModel() throws Exception {
+		configure();
+		establishTypes();
+		createEnums();
+		createBeans();
+		return types;
 	}
-	
-	private void copyResources(File src, File dest) {
-		for(File fsrc : src.listFiles()) {
-			if (Utils.in(fsrc.getName(), ".DS_Store", "CVS")) continue;
-			
-			File fdest = new File(dest, fsrc.getName());
-			if (fsrc.isDirectory()) {
-				if (!fdest.exists()) {
-					System.out.println("creating: " + fdest.getAbsolutePath());
-					fdest.mkdirs();
+
+	private void configure() throws Exception {
+		// only files changed since the last run are parsed again, see watch()
+		config = loader.load(new File(definitionFile));
+		types = new LinkedHashMap<String, JavaClass>();
+		repositories = new HashSet<String>();
+		fileCount = new AtomicInteger();
+		databaseChanged = false;
+		schema = null;
+		migration = null;
+
+		projectPath = config.getProjectPath();
+		sourcePath = "src/";
+		webPath = "WebContent/";
+	 	basePackage = config.getBasePackage();
+	 	
+ 		// load library configuration stuff
+ 		this.libraryPackage = config.getLibraryPackage();
+ 		this.logicsPackage = config.getLogicsPackage();
+ 		logicFacade = (config.getLogicFacade() == null)?null:JavaType.of(config.getLogicFacade());
+ 		this.digester = config.getDigester();
+ 		this.tagLibPrefix = config.getTagLibPrefix();
+ 		this.tagUtils = config.getTagUtils();
+ 		this.transactionFilter = config.getTransactionFilter();
+ 		this.exceptionHandler = config.getExceptionHandler();
+ 		this.tableNameClass = config.getTableNameClass();
+	}
+
+	/**
+	 * Generates, then regenerates every time the definition or a template changes.
+	 * The parsed definition, compiled templates and the manifest stay in memory,
+	 * so only the outputs affected by a change are rendered again.
+	 */
+	public void watch() throws Exception {
+		FileWatcher watcher = new FileWatcher();
+		try {
+			while(true) {
+				long start = System.currentTimeMillis();
+				try {
+					execute();
+					System.out.println("Generated in " + (System.currentTimeMillis() - start) + "ms");
+				} catch(Exception e) {
+					e.printStackTrace();
 				}
-				copyResources(fsrc, fdest);
-			} else {
-				if (fdest.getName().endsWith(".vel")) {
-					fdest = new File(dest, fsrc.getName().replace(".vel", ""));
+				for(File file : getWatchedFiles()) {
+					watcher.watch(file);
 				}
-				if (!fdest.exists()) {
-					System.out.println("creating: " + fdest.getAbsolutePath());
-					if (fsrc.getName().endsWith(".vel")) {
-						Reader in = null;
-						Writer out = null;
-						try {
-							in = new BufferedReader(new FileReader(fsrc));
-							String template = IOUtils.toString(in);
-							String content = Utils.execute(template, 
-								"basePackage", 			basePackage,
-								"projectName", 			getString("config.projectname"),
-								"databaseName",			getString("database.name"),
-								"transactionFilter", 	transactionFilter,
-								"exceptionFilter",		exceptionHandler,
-								"tagUtils",				tagUtils
-							);
-							out = new BufferedWriter(new FileWriter(fdest));
-							IOUtils.write(content, out);
-						} catch(Exception e) {
-							e.printStackTrace();
-						} finally {
-							IOUtils.closeQuietly(in);
-							IOUtils.closeQuietly(out);
-						}
-					} else {
-						InputStream in = null;
-						OutputStream out = null;
-						try {
-							in = new BufferedInputStream(new FileInputStream(fsrc));
-							out = new BufferedOutputStream(new FileOutputStream(fdest));
-							IOUtils.copy(in, out);
-						} catch(Exception e) {
-							e.printStackTrace();
-						} finally {
-							IOUtils.closeQuietly(in);
-							IOUtils.closeQuietly(out);
-						}
+				System.out.println("Watching for changes...");
+				System.out.println("Changed: " + watcher.awaitChanges());
+			}
+		} finally {
+			watcher.close();
+		}
+	}
+
+	private List<File> getWatchedFiles() {
+		List<File> files = new ArrayList<File>();
+		files.addAll(loader.getFiles());
+		if (files.isEmpty()) {
+			files.add(new File(definitionFile));
+		}
+		if (projectPath != null) {
+			File resources = new File(getResourcePath(""));
+			if (resources.isDirectory()) {
+				files.add(resources);
+			}
+		}
+		return files;
+	}
+
+	/** Sends the output somewhere other than the project directory, set before execute(). */
+	public void setOutputSink(OutputSink outputSink) {
+		this.outputSink = outputSink;
+	}
+
+	private OutputSink createOutputSink() throws Exception {
+		if (outputSink != null) {
+			return outputSink;
+		}
+		String archive = config.getOutputArchive();
+		if (StringUtils.isNotEmpty(archive)) {
+			return new ZipSink(new File(archive));
+		} else if (config.isDryRun()) {
+			return new MemorySink();
+		} else {
+			DirectorySink directory = new DirectorySink(new File(projectPath));
+			directory.setThreads(config.getThreads());
+			directory.setFsync(config.isFsync());
+			return directory;
+		}
+	}
+
+	/** @return whether the output at <code>path</code> exists and is current, in which case it is carried into this run's manifest */
+	private boolean isCurrent(String path, String fingerprint) throws Exception {
+		if (manifest.isCurrent(path, fingerprint) && sink.exists(path)) {
+			manifest.record(path, fingerprint);
+			telemetry.file(null, path, null, 0, true);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies mrcg-resources/src/to-copy into the project, rendering .vel files on the
+	 * way.  Nothing that already exists is overwritten.  The tree is walked once to
+	 * create the directories, the files are then copied in parallel.
+	 */
+	private void copyResources() throws Exception {
+		final Path root = new File(new File(projectPath).getParentFile(), "mrcg-resources/src/to-copy").toPath();
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (dir.getFileName().toString().equals("CVS")) return FileVisitResult.SKIP_SUBTREE;
+				if (!dir.equals(root)) {
+					String pdest = toResourcePath(root.relativize(dir));
+					if (!sink.exists(pdest)) {
+						System.out.println("creating: " + pdest);
+						sink.createDirectory(pdest);
 					}
 				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (!file.getFileName().toString().equals(".DS_Store")) {
+					files.add(root.relativize(file));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		final Map<String, Object> map = new HashMap<String, Object>();
+			map.put("basePackage", 			basePackage);
+			map.put("projectName", 			config.getProjectName());
+			map.put("databaseName",			config.getDatabaseName());
+			map.put("transactionFilter", 	transactionFilter);
+			map.put("exceptionFilter",		exceptionHandler);
+			map.put("tagUtils",				tagUtils);
+
+		scheduler.forEach(files, new Task<Path>() {
+			public void run(Path file) throws Exception {
+				copyResource(root.resolve(file).toFile(), toResourcePath(file), map);
 			}
+		});
+	}
+
+	private String toResourcePath(Path relative) {
+		StringBuilder b = new StringBuilder();
+		for(Path name : relative) {
+			if (b.length() > 0) b.append('/');
+			b.append(name.toString());
+		}
+		return b.toString();
+	}
+
+	private void copyResource(File fsrc, String pdest, Map<String, Object> map) {
+		boolean render = pdest.endsWith(".vel");
+		if (render) {
+			pdest = pdest.substring(0, pdest.lastIndexOf('/') + 1) + fsrc.getName().replace(".vel", "");
+		}
+		try {
+			if (!sink.exists(pdest)) {
+				System.out.println("creating: " + pdest);
+				Telemetry.Probe probe = telemetry.start();
+				if (render) {
+					byte[] content = templates.merge(fsrc, map).getBytes(UTF8);
+					sink.write(pdest, content);
+					telemetry.file(probe, pdest, fsrc.getName(), content.length, false);
+				} else {
+					sink.copy(fsrc, pdest);
+					telemetry.file(probe, pdest, null, fsrc.length(), false);
+				}
+			}
+		} catch(Exception e) {
+			e.printStackTrace();
 		}
 	}
 	
 	private void createSQL() throws Exception {
-		String databaseType = getString("database.type");
+		String databaseType = config.getDatabaseType();
 		DBScripter dbScripter = DB_SCRIPTER.get(databaseType);
-		String script = dbScripter.buildScript(getString("database.name"), types);
-		File file = new File(projectPath + "database/" + databaseType + "/01-create-generated.sql");
-		boolean changed = content(file, script, true);
-		if (isSkipDatabaseEnabled()) return;
-		if (isDesignAlwaysModeEnabled() || (changed && isDesignModeEnabled())) {
-			System.out.print("Running SQL Script...");
-
-			Process process = Runtime.getRuntime().exec(
-				"bash runall.sh", 
-				null,
-				new File(projectPath + "database/" + databaseType)
-			);
-			BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
-			BufferedReader err = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-			System.out.println(process.waitFor());
-			while(in.ready() || err.ready()) {
-				if (in.ready()) {
-					System.out.println(in.readLine());
-				} else if (err.ready()) {
-					System.err.println(err.readLine());
-				}
+		String path = "database/" + databaseType + "/01-create-generated.sql";
+		boolean changed = false;
+		if (!isCurrent(path, modelFingerprint)) {
+			Telemetry.Probe probe = telemetry.start();
+			String script = dbScripter.buildScript(config.getDatabaseName(), types);
+			changed = content(path, script, true, dbScripter.getClass().getSimpleName(), probe);
+			manifest.record(path, modelFingerprint);
+		}
+		// the script can only run against what is on disk, once the output has been closed
+		if (config.isSkipDatabase() || sink.getDirectory() == null) return;
+		databaseChanged = config.isDesignAlwaysMode() || (changed && config.isDesignMode());
+
+		// the migration goes from the schema the database was last built from to this one
+		schema = dbScripter.snapshot(types);
+		SchemaSnapshot previous = SchemaSnapshot.load(getSchemaFile());
+		if (previous != null) {
+			Telemetry.Probe probe = telemetry.start();
+			migration = dbScripter.buildMigration(config.getDatabaseName(), previous, schema);
+			String script = (migration == null)?"-- the schema can't be migrated without losing data, 01-create-generated.sql rebuilds the database\n":migration;
+			content("database/" + databaseType + "/" + MIGRATION_SCRIPT, script, true, dbScripter.getClass().getSimpleName(), probe);
+		}
+	}
+
+	private File getSchemaFile() {
+		return new File(sink.getDirectory(), ".mrcg/schema-" + config.getDatabaseType());
+	}
+
+	/**
+	 * Applies the database scripts over JDBC when there is a database.url, otherwise runs runall.sh.
+	 * Over JDBC only the migration is applied when there is one, the database is rebuilt if it fails.
+	 * runall.sh always rebuilds the database, migrate/migrate-generated.sql is left for applying by hand.
+	 */
+	private void runDatabaseScript() throws Exception {
+		File directory = new File(sink.getDirectory(), "database/" + config.getDatabaseType());
+		if (StringUtils.isEmpty(config.getDatabaseUrl())) {
+			System.out.println("Running SQL Script...");
+			// the script's output goes straight to ours, nothing can back up in a pipe
+			Process process = new ProcessBuilder("bash", "runall.sh").directory(directory).inheritIO().start();
+			int exitCode = process.waitFor();
+			System.out.println("runall.sh exited with " + exitCode);
+			if (exitCode == 0) {
+				schema.save(getSchemaFile());
 			}
+			return;
+		}
+
+		SchemaApplier applier = new SchemaApplier(config.getDatabaseUrl(), config.getDatabaseUser(), config.getDatabasePassword());
+		applier.setTimeout(config.getDatabaseTimeout());
+		applier.setBatchSize(config.getDatabaseBatchSize());
+		applier.setBootstrapDatabase(config.getDatabaseBootstrap());
+		applier.setListener(new SchemaApplier.Listener() {
+			public void executed(String sql, int done, int total, long millis) {
+				int end = sql.indexOf('\n');
+				System.out.println("  [" + done + "/" + total + "] " + millis + " ms\t" + ((end == -1)?sql:sql.substring(0, end)));
+			}
+		});
+		if (migration != null) {
+			try {
+				System.out.println("Applying " + MIGRATION_SCRIPT + "...");
+				applier.apply(migration);
+				schema.save(getSchemaFile());
+				return;
+			} catch(SQLException e) {
+				System.err.println("Unable to migrate the database, rebuilding it: " + e.getMessage());
+			}
+		}
+
+		File[] scripts = directory.listFiles();
+		Arrays.sort(scripts);
+		for(File script : scripts) {
+			if (!script.isFile() || !script.getName().endsWith(".sql")) continue;
+			System.out.println("Applying " + script.getName() + "...");
+			applier.apply(FileUtils.readFileToString(script, UTF8));
 		}
+		schema.save(getSchemaFile());
 	}
 	
 	public boolean isDesignModeEnabled() {
-		return "design".equals(getString("config.mode"));
+		return config.isDesignMode();
 	}
 
 	public boolean isDesignAlwaysModeEnabled() {
-		return "design-always".equals(getString("config.mode"));
+		return config.isDesignAlwaysMode();
 	}
 	
 	public boolean isSkipDatabaseEnabled() {
-		return "true".equals(getString("config.skipdatabase"));
+		return config.isSkipDatabase();
 	}
 
 	private String getResourcePath(String filename) {
@@ -281,12 +567,12 @@ public class MRCGInstance {
 	private void createOtherResources() throws Exception {
 		Map<String, Object> map = new HashMap<String, Object>();
 			map.put("basePackage", basePackage);
-			map.put("databaseName", getString("database.name"));
+			map.put("databaseName", config.getDatabaseName());
 			map.put("libraryPackage", libraryPackage);
 			map.put("logicsPackage", logicsPackage);
-			map.put("logicFacade", JavaType.LOGIC_FACADE.getName());
+			map.put("logicFacade", (logicFacade == null)?null:logicFacade.getName());
 			map.put("digester", digester);
-			map.put("digesterClassName", new JavaType(digester).getJustClassName());
+			map.put("digesterClassName", (digester == null)?null:Utils.getJustClassName(digester));
 			map.put("tagLibPrefix", tagLibPrefix);
 			map.put("tagUtils", tagUtils);
 			map.put("transactionFilter", transactionFilter);
@@ -296,107 +582,130 @@ public class MRCGInstance {
 		String base = sourcePath + basePackage.replace('.', '/');
 		String rbase = 	new File(new File(projectPath).getParentFile(), "mrcg-resources/src/resources").getAbsolutePath();
 
-		velocity(new File(base + "/gui/filter/AuthenticationFilter.java"), rbase + "/AuthenticationFilter.java.vel", map, false);
-		velocity(new File(base + "/gui/action/LoginAction.java"), rbase + "/LoginAction.java.vel", map, false);
-		velocity(new File(base + "/gui/action/LogoutAction.java"), rbase + "/LogoutAction.java.vel", map, false);
-		velocity(new File(base + "/gui/action/ChangePasswordAction.java"), rbase + "/ChangePasswordAction.java.vel", map, false);
-		velocity(new File(base + "/gui/action/BaseAction.java"), rbase + "/BaseAction.java.vel", map, false);
-		velocity(new File(base + "/gui/admin/action/AbstractListAction.java"), rbase + "/AbstractListAction.java.vel", map, false);
-		velocity(new File(base + "/gui/admin/action/IndexAction.java"), rbase + "/IndexAction.java.vel", map, false);
-		velocity(new File(base + "/gui/servlet/StartupServlet.java"), rbase + "/StartupServlet.java.vel", map, false);			
-		velocity(new File("/srv/" + getString("config.projectname") + "/config.properties"), rbase + "/config.properties.vel", map, false);
+		velocity(base + "/gui/filter/AuthenticationFilter.java", rbase + "/AuthenticationFilter.java.vel", map, false);
+		velocity(base + "/gui/action/LoginAction.java", rbase + "/LoginAction.java.vel", map, false);
+		velocity(base + "/gui/action/LogoutAction.java", rbase + "/LogoutAction.java.vel", map, false);
+		velocity(base + "/gui/action/ChangePasswordAction.java", rbase + "/ChangePasswordAction.java.vel", map, false);
+		velocity(base + "/gui/action/BaseAction.java", rbase + "/BaseAction.java.vel", map, false);
+		velocity(base + "/gui/admin/action/AbstractListAction.java", rbase + "/AbstractListAction.java.vel", map, false);
+		velocity(base + "/gui/admin/action/IndexAction.java", rbase + "/IndexAction.java.vel", map, false);
+		velocity(base + "/gui/servlet/StartupServlet.java", rbase + "/StartupServlet.java.vel", map, false);			
+		String properties = config.getPropertiesFile();
+		if (StringUtils.isEmpty(properties)) {
+			properties = "/srv/" + config.getProjectName() + "/config.properties";
+		}
+		velocity(properties, rbase + "/config.properties.vel", map, false);
 	}
 	
 	
 	private void createEditJSPs() throws Exception {
-		for(JavaClass jclass : types.values()) {
-			if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {				
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("basePackage", basePackage);
-				map.put("classUpper", StringUtils.capitalize(jclass.getName()));
-				map.put("classUpperSpaced", Utils.toSpacedCamelCase(StringUtils.capitalize(jclass.getName())));
-				map.put("classLower", jclass.getName().toLowerCase());
-				map.put("classLowerCamel", StringUtils.uncapitalize(jclass.getName()));
-				map.put("fields", jclass.getNonAutoHandledInstanceFields());
+		scheduler.forEach(types.values(), new Task<JavaClass>() {
+			public void run(JavaClass jclass) throws Exception {
+				createEditJSP(jclass);
+			}
+		});
+	}
+
+	private void createEditJSP(JavaClass jclass) throws Exception {
+		if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {				
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("basePackage", basePackage);
+			map.put("classUpper", StringUtils.capitalize(jclass.getName()));
+			map.put("classUpperSpaced", Utils.toSpacedCamelCase(StringUtils.capitalize(jclass.getName())));
+			map.put("classLower", jclass.getName().toLowerCase());
+			map.put("classLowerCamel", StringUtils.uncapitalize(jclass.getName()));
+			map.put("fields", jclass.getNonAutoHandledInstanceFields());
 //				map.put("mappings", convertToJspEditCode(jclass));
-				map.put("tagLibPrefix", tagLibPrefix);
-				File file = new File(webPath + "admin/" + jclass.getName().toLowerCase() + "/edit.jsp");
-				velocity(file, getResourcePath("edit-jsp.vel"), map, false);
+			map.put("tagLibPrefix", tagLibPrefix);
+			String path = webPath + "admin/" + jclass.getName().toLowerCase() + "/edit.jsp";
+			velocity(path, getResourcePath("edit-jsp.vel"), map, false);
 
-				file = new File(webPath + "admin/" + jclass.getName().toLowerCase() + "/edit-layout.jsp");
-				velocity(file, getResourcePath("edit-layout-jsp.vel"), map, true);
-				
+			path = webPath + "admin/" + jclass.getName().toLowerCase() + "/edit-layout.jsp";
+			String fingerprint = fingerprint(jclass, "edit-layout-jsp.vel");
+			if (!isCurrent(path, fingerprint)) {
+				velocity(path, getResourcePath("edit-layout-jsp.vel"), map, true);
+				manifest.record(path, fingerprint);
 			}
+			
 		}
 	}
 
 	private void createListJSPs() throws Exception {
-		for(JavaClass jclass : types.values()) {
-			if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {
-				
-				String path = "beans." + jclass.getName() + ".list.";
-				
-				List<ListField> listFields = new ArrayList<ListField>();
-				List<Object> lfs = getList(path + "fields");
-				if (lfs != null && !lfs.isEmpty()) {
-					for(Object o : lfs) {
-						String s = StringUtils.trimToEmpty(o.toString());
-						ListField lf = new ListField();
-						if (s.contains(":")) {
-							String[] ss = s.split(":");
-							lf.setName(ss[0]);
-							lf.setLabel(ss[1]);
-						} else {
-							lf.setName(s);
-							lf.setLabel(Utils.toSpacedCamelCase(StringUtils.capitaliseAllWords(s.replace('.', ' '))));
-						}
-						listFields.add(lf);
+		scheduler.forEach(types.values(), new Task<JavaClass>() {
+			public void run(JavaClass jclass) throws Exception {
+				createListJSP(jclass);
+			}
+		});
+	}
+
+	private void createListJSP(JavaClass jclass) throws Exception {
+		if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {
+			
+			BeanConfig bean = config.getBean(jclass.getName());
+			
+			List<ListField> listFields = new ArrayList<ListField>();
+			List<String> lfs = bean.getListFields();
+			if (!lfs.isEmpty()) {
+				for(String s : lfs) {
+					ListField lf = new ListField();
+					if (s.contains(":")) {
+						String[] ss = s.split(":");
+						lf.setName(ss[0]);
+						lf.setLabel(ss[1]);
+					} else {
+						lf.setName(s);
+						lf.setLabel(Utils.toSpacedCamelCase(StringUtils.capitaliseAllWords(s.replace('.', ' '))));
 					}
-				} else {
-					for(JavaField jf : jclass.getListFields()) {
-						ListField lf = new ListField();
-						if (jf.isReferenceField()) {
-							JavaClass ref = jf.getReferences();
-							lf.setLabel(jf.getNameAsLabel().replace(" Id", ""));
-							String refField = "identifierLabel";
-							if (ref.getIdentifierField() != null) {
-								refField = ref.getIdentifierField().getName();
-							}
-							lf.setName(jf.getName().replace("Id", "") + "." + refField);
-						} else {
-							lf.setLabel(jf.getNameAsLabel());
-							lf.setName(jf.getName());
+					listFields.add(lf);
+				}
+			} else {
+				for(JavaField jf : jclass.getListFields()) {
+					ListField lf = new ListField();
+					if (jf.isReferenceField()) {
+						JavaClass ref = jf.getReferences();
+						lf.setLabel(jf.getNameAsLabel().replace(" Id", ""));
+						String refField = "identifierLabel";
+						if (ref.getIdentifierField() != null) {
+							refField = ref.getIdentifierField().getName();
 						}
-						listFields.add(lf);
+						lf.setName(jf.getName().replace("Id", "") + "." + refField);
+					} else {
+						lf.setLabel(jf.getNameAsLabel());
+						lf.setName(jf.getName());
 					}
+					listFields.add(lf);
 				}
-				
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("basePackage", basePackage);
-				map.put("classUpper", StringUtils.capitalize(jclass.getName()));
-				map.put("classUpperSpaced", Utils.toSpacedCamelCase(StringUtils.capitalize(jclass.getName())));
-				map.put("classUpperSpacedPlural", Utils.toSpacedCamelCase(StringUtils.capitalize(Utils.pluralize(jclass.getName()))));
-				map.put("classLower", jclass.getName().toLowerCase());
-				map.put("classLowerCamel", StringUtils.uncapitalize(jclass.getName()));
-				map.put("fields", listFields);
-				map.put("tagLibPrefix", tagLibPrefix);
+			}
+			
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("basePackage", basePackage);
+			map.put("classUpper", StringUtils.capitalize(jclass.getName()));
+			map.put("classUpperSpaced", Utils.toSpacedCamelCase(StringUtils.capitalize(jclass.getName())));
+			map.put("classUpperSpacedPlural", Utils.toSpacedCamelCase(StringUtils.capitalize(Utils.pluralize(jclass.getName()))));
+			map.put("classLower", jclass.getName().toLowerCase());
+			map.put("classLowerCamel", StringUtils.uncapitalize(jclass.getName()));
+			map.put("fields", listFields);
+			map.put("tagLibPrefix", tagLibPrefix);
 //				map.put("mappings", convertToJspEditCode(jclass));
-				map.put("edit", getBoolean(path + "edit", true));
-				map.put("view", getBoolean(path + "view", true));
-				
-				File file = new File(webPath + "admin/" + jclass.getName().toLowerCase() + "/list-generated.jsp");
+			map.put("edit", bean.isListEdit());
+			map.put("view", bean.isListView());
+			
+			String file = webPath + "admin/" + jclass.getName().toLowerCase() + "/list-generated.jsp";
+			String fingerprint = fingerprint(jclass, "list-jsp.vel");
+			if (!isCurrent(file, fingerprint)) {
 				velocity(file, getResourcePath("list-jsp.vel"), map, true);
+				manifest.record(file, fingerprint);
 			}
 		}
 	}
 
 	private void createBaseActions() throws Exception {
 		JavaClass genBase = new JavaClass(basePackage + ".generated.gui.admin.action", "GeneratedBaseAction");
-		genBase.addImplements(new JavaType("net.sourceforge.stripes.action.ActionBean"));
-		genBase.addImport(JavaType.LOGIC_FACADE);
-		genBase.addImport(new JavaType("java.util.List"));
-		genBase.addImport(new JavaType("java.io.InputStream"));
-		Utils.createBeanProperty(genBase, new JavaType("net.sourceforge.stripes.action.ActionBeanContext"), "context", Visibility.Private, true);		
+		genBase.addImplements(JavaType.of("net.sourceforge.stripes.action.ActionBean"));
+		genBase.addImport(logicFacade);
+		genBase.addImport(JavaType.of("java.util.List"));
+		genBase.addImport(JavaType.of("java.io.InputStream"));
+		Utils.createBeanProperty(genBase, JavaType.of("net.sourceforge.stripes.action.ActionBeanContext"), "context", Visibility.Private, true);		
 		
 		JavaMethod jspe = new JavaMethod(JavaType.BOOLEAN, "doesJspExist");
 		jspe.addParameter(new JavaParameter(JavaType.STRING, "jsp"));
@@ -410,10 +719,10 @@ public class MRCGInstance {
 			"\t\t}"
 		);
 		genBase.addMethod(jspe);
-		genBase.addImport(new JavaType("org.apache.commons.io.IOUtils"));
+		genBase.addImport(JavaType.of("org.apache.commons.io.IOUtils"));
 		
-		JavaMethod gcids = new JavaMethod(new JavaType("java.util.Set", JavaType.LONG), "getCheckedIds");
-		gcids.addParameter(new JavaParameter(new JavaType("java.util.Map", JavaType.LONG, JavaType.BOOLEAN), "map"));
+		JavaMethod gcids = new JavaMethod(JavaType.of("java.util.Set", JavaType.LONG), "getCheckedIds");
+		gcids.addParameter(new JavaParameter(JavaType.of("java.util.Map", JavaType.LONG, JavaType.BOOLEAN), "map"));
 		gcids.setBody(
 			"\t\tSet<Long> set = new HashSet<Long>();\n" +
 			"\t\tif (map != null) {\n" +
@@ -427,19 +736,17 @@ public class MRCGInstance {
 			"\t\treturn set;"
 		);
 		genBase.addMethod(gcids);
-		genBase.addImport(new JavaType("java.util.HashSet"));
+		genBase.addImport(JavaType.of("java.util.HashSet"));
 		
 		for(JavaClass jclass : types.values()) {
 			if (jclass.isEnum()) {
-				genBase.addImport(new JavaType("java.util.Arrays"));
-				JavaType jt = new JavaType("java.util.List");
-				jt.addType(jclass.getJavaType());
+				genBase.addImport(JavaType.of("java.util.Arrays"));
+				JavaType jt = JavaType.of("java.util.List", jclass.getJavaType());
 				JavaMethod m = new JavaMethod(jt, "get" + Utils.pluralize(jclass.getName()));
 				m.setBody("\t\treturn Arrays.asList(" + jclass.getName() + ".values());");
 				genBase.addMethod(m);
 			} else {
-				JavaType jt = new JavaType("java.util.List");
-				jt.addType(jclass.getJavaType());
+				JavaType jt = JavaType.of("java.util.List", jclass.getJavaType());
 				JavaMethod m = new JavaMethod(jt, "get" + Utils.pluralize(jclass.getName()));
 
 				JavaField orderField = jclass.getOrderField();
@@ -447,17 +754,24 @@ public class MRCGInstance {
 					orderField = jclass.getIdentifierField();
 				}
 				
-				if (orderField != null) {
-					m.setBody("\t\treturn " + JavaType.LOGIC_FACADE.getJustClassName() + ".listBySQL(" + jclass.getName() + ".class, \"ORDER BY " + Utils.toDatabaseFormat(orderField.getName()) + "\");");						
+				if (hasRepository(jclass)) {
+					genBase.addImport(getRepositoryType(jclass));
+					m.setBody("\t\treturn Generated" + jclass.getName() + "Repository.list();");
+				} else if (orderField != null) {
+					m.setBody("\t\treturn " + getLogicFacadeName() + ".listBySQL(" + jclass.getName() + ".class, \"ORDER BY " + Utils.toDatabaseFormat(orderField.getName()) + "\");");						
 				} else {
-					m.setBody("\t\treturn " + JavaType.LOGIC_FACADE.getJustClassName() + ".list(" + jclass.getName() + ".class);");					
+					m.setBody("\t\treturn " + getLogicFacadeName() + ".list(" + jclass.getName() + ".class);");					
 				}
 
 				genBase.addMethod(m);
 			}
 		}
 		
-		write(genBase);
+		String file = classToFile(genBase);
+		if (!isCurrent(file, modelFingerprint)) {
+			write(genBase);
+			manifest.record(file, modelFingerprint);
+		}
 		
 		JavaClass base = new JavaClass(basePackage + ".gui.admin.action", "BaseAction");
 		base.setExtendsion(genBase.getJavaType());
@@ -466,96 +780,993 @@ public class MRCGInstance {
 	}
 	
 	private boolean skipGui(JavaClass jclass) {
-		return getBoolean("beans." + jclass.getName() + ".skipgui", false);
+		BeanConfig bean = config.getBean(jclass.getName());
+		return bean != null && bean.isSkipGui();
 	}
 	
 	private static final Set<String> DONT_VALIDATE = Utils.toSet("id","createdAt","updatedAt");
 	private void createEditActions() throws Exception {
-		for(JavaClass jclass : types.values()) {
-			if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {
-				Set<String> imports = new HashSet<String>();
-				
-				String classUpper = StringUtils.capitalize(jclass.getName());
-				String classLower = jclass.getName().toLowerCase();
-				String pkg = basePackage + ".generated.gui.admin.action." + classLower;
-				String classname = "GeneratedEdit" + classUpper + "Action";
-				
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("basePackage", basePackage);
-				map.put("classUpper", classUpper);
-				map.put("classLower", classLower);
-				map.put("libraryPackage", libraryPackage);
-				map.put("logicsPackage", logicsPackage);
-				map.put("logicFacade", JavaType.LOGIC_FACADE.getName());
-
-				String v = "@ValidateNestedProperties({\n";
-				for(JavaField jf : jclass.getFields()) {
-					if (!jf.isStatic() && !DONT_VALIDATE.contains(jf.getName())) {
-						v += "\t\t@Validate(field=\"" + jf.getName() + "\"";
-						
-						String label = Utils.firstNonNull(jf.getLabel(), jf.getNameAsLabel());
-						v += ", label=\"" + label + "\"";
-						
-						if (jf.isRequired()) {
-							v += ", required=true";
-						}
-						if (jf.isDateField()) {
-							imports.add(libraryPackage + ".stripes.LocalDateTimeConverter");
-							v += ", converter=LocalDateTimeConverter.class";
-						} else if (jf.isEmailField()) {
-							imports.add("net.sourceforge.stripes.validation.EmailTypeConverter");
-							v += ", converter=EmailTypeConverter.class";
-						}
-						v += "),\n";
+		scheduler.forEach(types.values(), new Task<JavaClass>() {
+			public void run(JavaClass jclass) throws Exception {
+				createEditAction(jclass);
+			}
+		});
+	}
+
+	private void createEditAction(JavaClass jclass) throws Exception {
+		if (!(jclass.isEnum() || jclass.isMapping() || skipGui(jclass))) {
+			Set<String> imports = new TreeSet<String>();
+			
+			String classUpper = StringUtils.capitalize(jclass.getName());
+			String classLower = jclass.getName().toLowerCase();
+			String pkg = basePackage + ".generated.gui.admin.action." + classLower;
+			String classname = "GeneratedEdit" + classUpper + "Action";
+			
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("basePackage", basePackage);
+			map.put("classUpper", classUpper);
+			map.put("classLower", classLower);
+			map.put("libraryPackage", libraryPackage);
+			map.put("logicsPackage", logicsPackage);
+			map.put("logicFacade", (logicFacade == null)?null:logicFacade.getName());
+
+			String v = "@ValidateNestedProperties({\n";
+			for(JavaField jf : jclass.getFields()) {
+				if (!jf.isStatic() && !DONT_VALIDATE.contains(jf.getName())) {
+					v += "\t\t@Validate(field=\"" + jf.getName() + "\"";
+					
+					String label = Utils.firstNonNull(jf.getLabel(), jf.getNameAsLabel());
+					v += ", label=\"" + label + "\"";
+					
+					if (jf.isRequired()) {
+						v += ", required=true";
 					}
+					if (jf.isDateField()) {
+						imports.add(libraryPackage + ".stripes.LocalDateTimeConverter");
+						v += ", converter=LocalDateTimeConverter.class";
+					} else if (jf.isEmailField()) {
+						imports.add("net.sourceforge.stripes.validation.EmailTypeConverter");
+						v += ", converter=EmailTypeConverter.class";
+					}
+					v += "),\n";
+				}
+			}
+			v += "\t})";
+			map.put("validation", v);
+			
+			map.put("imports", imports);
+			
+			String file = classToFile(pkg, classname);
+			if (hasRepository(jclass)) {
+				String fingerprint = Fingerprint.of(fingerprints.get(jclass), classname);
+				if (!isCurrent(file, fingerprint)) {
+					write(createEditAction(jclass, pkg, classname, v, imports));
+					manifest.record(file, fingerprint);
+				}
+			} else {
+				String fingerprint = fingerprint(jclass, "GeneratedEditAction.vel");
+				if (!isCurrent(file, fingerprint)) {
+					velocity(file, getResourcePath("GeneratedEditAction.vel"), map, true);
+					manifest.record(file, fingerprint);
 				}
-				v += "\t})";
-				map.put("validation", v);
-				
-				map.put("imports", imports);
-				
-				velocity(classToFile(pkg, classname), getResourcePath("GeneratedEditAction.vel"), map, true);
-
-				// Edit Action
-				pkg = basePackage + ".gui.admin.action." + classLower;
-				classname = "Edit" + classUpper + "Action";				
-				velocity(classToFile(pkg, classname), getResourcePath("EditAction.vel"), map, false);
 			}
+
+			// Edit Action
+			pkg = basePackage + ".gui.admin.action." + classLower;
+			classname = "Edit" + classUpper + "Action";				
+			velocity(classToFile(pkg, classname), getResourcePath("EditAction.vel"), map, false);
 		}
 	}
 
-	
+	/**
+	 * GeneratedEdit&lt;Bean&gt;Action for a bean with a repository, loading, saving and deleting
+	 * the item through it.  The template only knows the logic facade.
+	 */
+	private JavaClass createEditAction(JavaClass jclass, String pkg, String classname, String validation, Set<String> imports) {
+		String classLower = jclass.getName().toLowerCase();
+		String repository = "Generated" + jclass.getName() + "Repository";
+		String list = "return new RedirectResolution(\"/admin/" + classLower + "/list.action\");";
+
+		JavaClass action = new JavaClass(pkg, classname);
+		action.setMethodSpacer("\n");
+		action.setExtendsion(JavaType.of(basePackage + ".gui.admin.action.BaseAction"));
+		action.addImport(jclass.getJavaType());
+		action.addImport(getRepositoryType(jclass));
+		action.addImport(JavaType.of("net.sourceforge.stripes.action.DefaultHandler"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.action.DontValidate"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.action.ForwardResolution"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.action.RedirectResolution"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.action.Resolution"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.validation.Validate"));
+		action.addImport(JavaType.of("net.sourceforge.stripes.validation.ValidateNestedProperties"));
+		for(String type : imports) {
+			action.addImport(JavaType.of(type));
+		}
+
+		Utils.createBeanProperty(action, JavaType.LONG, "id", Visibility.Private, true);
+		JavaField item = Utils.createBeanProperty(action, jclass.getJavaType(), "item", Visibility.Private, true);
+		item.addAnnotation(validation);
+
+		JavaMethod jm = new JavaMethod(JavaType.of("net.sourceforge.stripes.action.Resolution"), "execute");
+		jm.addAnnotation("@DefaultHandler");
+		jm.addAnnotation("@DontValidate");
+		jm.setBody(new Coder()
+			.println(2, "if (item == null && id != null) {")
+			.println(3, "item = " + repository + ".get(id);")
+			.println(2, "}")
+			.print(0, Utils.createEditActionExecuteMethodBody(classLower))
+			.toString()
+		);
+		action.addMethod(jm);
+
+		jm = new JavaMethod(JavaType.of("net.sourceforge.stripes.action.Resolution"), "save");
+		jm.setBody(new Coder()
+			.println(2, repository + ".save(item);")
+			.print(2, list)
+			.toString()
+		);
+		action.addMethod(jm);
+
+		jm = new JavaMethod(JavaType.of("net.sourceforge.stripes.action.Resolution"), "delete");
+		jm.addAnnotation("@DontValidate");
+		jm.setBody(new Coder()
+			.println(2, "if (id != null) {")
+			.println(3, repository + ".delete(id);")
+			.println(2, "}")
+			.print(2, list)
+			.toString()
+		);
+		action.addMethod(jm);
+		return action;
+	}
+
 	private void outputTypes() throws Exception {
-		for(JavaClass jc : types.values()) {
-			if (jc.isEnum()) {
-				if (jc.getCompleteName().startsWith(basePackage) && !jc.isPreExisting()) {
+		scheduler.forEach(types.values(), new Task<JavaClass>() {
+			public void run(JavaClass jc) throws Exception {
+				outputType(jc);
+			}
+		});
+	}
+
+	private void outputType(JavaClass jc) throws Exception {
+		String fingerprint = fingerprints.get(jc);
+		if (jc.isEnum()) {
+			if (jc.getCompleteName().startsWith(basePackage) && !jc.isPreExisting()) {
+				String file = classToFile(jc);
+				if (!isCurrent(file, fingerprint)) {
 					write(jc);
+					manifest.record(file, fingerprint);
 				}
-			} else {
-				String pkg = jc.getPackage();
-				String name = jc.getName();
-				jc.setPackage(basePackage + ".generated.bean");
-				jc.setName("Generated" + name);
-				
-				if (jc.hasTableNameOverride()) {
-					jc.addAnnotation("@TableName(\"" + jc.getTableName() + "\")");
-					jc.addImport(new JavaType(tableNameClass));
+			}
+		} else {
+			// a renamed copy, the model is shared with the stages running alongside this one
+			JavaClass generated = new JavaClass(jc, basePackage + ".generated.bean", "Generated" + jc.getName());
+
+			if (generated.hasTableNameOverride()) {
+				generated.addAnnotation("@TableName(\"" + generated.getTableName() + "\")");
+				if (tableNameClass != null) {
+					generated.addImport(JavaType.of(tableNameClass));
 				}
-				
-				jc.addAnnotation("@SuppressWarnings(\"serial\")");
-				jc.addImplements(JavaType.SERIALIZABLE);
-				write(jc);
-				
-				JavaClass real = new JavaClass(pkg, name);
-				real.setExtendsion(jc.getJavaType());
-				real.addImport(jc.getJavaType());
-				real.addAnnotation("@SuppressWarnings(\"serial\")");
-				write(real, false);
-				
-				jc.setPackage(pkg);
-				jc.setName(name);
+			}
+
+			generated.addAnnotation("@SuppressWarnings(\"serial\")");
+			generated.addImplements(JavaType.SERIALIZABLE);
+			String file = classToFile(generated);
+			if (!isCurrent(file, fingerprint)) {
+				write(generated);
+				manifest.record(file, fingerprint);
+			}
+
+			JavaClass real = new JavaClass(jc.getPackage(), jc.getName());
+			real.setExtendsion(generated.getJavaType());
+			real.addImport(generated.getJavaType());
+			real.addAnnotation("@SuppressWarnings(\"serial\")");
+			write(real, false);
+
+			if (config.isRowMappers() && JdbcUtils.isMappable(jc)) {
+				JavaClass mapper = createMapper(jc);
+				String mapperFile = classToFile(mapper);
+				String mapperFingerprint = Fingerprint.of(fingerprint, mapper.getName());
+				if (!isCurrent(mapperFile, mapperFingerprint)) {
+					write(mapper);
+					manifest.record(mapperFile, mapperFingerprint);
+				}
+			}
+
+			if (hasRepository(jc)) {
+				JavaClass repository = createRepository(jc);
+				String repositoryFile = classToFile(repository);
+				String repositoryFingerprint = Fingerprint.of(fingerprint, repository.getName());
+				if (!isCurrent(repositoryFile, repositoryFingerprint)) {
+					write(repository);
+					manifest.record(repositoryFile, repositoryFingerprint);
+				}
+			}
+		}
+	}
+
+	/** Generated&lt;Bean&gt;Mapper, reading a bean from a row by column index, without reflection. */
+	private JavaClass createMapper(JavaClass jc) {
+		JavaClass mapper = new JavaClass(basePackage + ".generated.data", "Generated" + jc.getName() + "Mapper");
+		mapper.setMethodSpacer("\n");
+		mapper.addImport(jc.getJavaType());
+		List<JavaField> columns = JdbcUtils.getColumns(jc);
+
+		mapper.addField(createConstant("TABLE", jc.getTableName()));
+		mapper.addField(createConstant("COLUMNS", JdbcUtils.getColumnList(columns, getColumnDelimiter())));
+
+		JavaMethod jm = new JavaMethod(jc, "map");
+		jm.setStatic(true);
+		jm.addParameter(new JavaParameter(JavaType.RESULT_SET, "resultSet"));
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody("\t\treturn map(resultSet, 1);");
+		mapper.addMethod(jm);
+
+		Coder coder = new Coder();
+		coder.println(2, jc.getName() + " bean = new " + jc.getName() + "();");
+		for(int i = 0; i < columns.size(); i++) {
+			JavaField jf = columns.get(i);
+			coder.println(2, JdbcUtils.read(jf, "bean", "resultSet", (i == 0)?"first":"first + " + i, "value" + i));
+			for(JavaType type : JdbcUtils.getReadTypes(jf)) {
+				mapper.addImport(type);
+			}
+		}
+		coder.print(2, "return bean;");
+		jm = new JavaMethod(jc, "map");
+		jm.setStatic(true);
+		jm.addParameter(new JavaParameter(JavaType.RESULT_SET, "resultSet"));
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "first"));
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody(coder.toString());
+		mapper.addMethod(jm);
+
+		mapper.addImport(JavaType.of("java.util.ArrayList"));
+		jm = new JavaMethod(JavaType.of("java.util.List", jc.getJavaType()), "mapAll");
+		jm.setStatic(true);
+		jm.addParameter(new JavaParameter(JavaType.RESULT_SET, "resultSet"));
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody(new Coder()
+			.println(2, "List<" + jc.getName() + "> beans = new ArrayList<" + jc.getName() + ">();")
+			.println(2, "while(resultSet.next()) {")
+			.println(3, "beans.add(map(resultSet, 1));")
+			.println(2, "}")
+			.print(2, "return beans;")
+			.toString()
+		);
+		mapper.addMethod(jm);
+		return mapper;
+	}
+
+	/**
+	 * Generated&lt;Bean&gt;Repository, the bean's statements as constants and a method running
+	 * each, on the connection of the current transaction.  The connection is left open.
+	 */
+	private JavaClass createRepository(JavaClass jc) {
+		JavaClass repository = new JavaClass(basePackage + ".generated.data", "Generated" + jc.getName() + "Repository");
+		repository.setMethodSpacer("\n");
+		repository.addImport(jc.getJavaType());
+		repository.addImport(JavaType.of(config.getConnectionProvider()));
+		repository.addImport(JavaType.of("java.sql.PreparedStatement"));
+		repository.addImport(JavaType.RESULT_SET);
+		repository.addImport(JdbcUtils.SQL_EXCEPTION);
+		String mapper = "Generated" + jc.getName() + "Mapper";
+
+		List<JavaField> columns = JdbcUtils.getColumns(jc);
+		List<JavaField> inserted = new ArrayList<JavaField>();
+		List<JavaField> updated = new ArrayList<JavaField>();
+		for(JavaField jf : columns) {
+			if (!"id".equals(jf.getName())) {
+				inserted.add(jf);
+				if (!"createdAt".equals(jf.getName())) {
+					updated.add(jf);
+				}
+			}
+		}
+		JavaField orderField = Utils.firstNonNull(jc.getOrderField(), jc.getIdentifierField());
+		String table = jc.getTableName();
+		String delimiter = getColumnDelimiter();
+		String select = "SELECT " + JdbcUtils.getColumnList(columns, delimiter) + " FROM " + table;
+
+		repository.addField(createConstant("SELECT_BY_ID", select + " WHERE id = ?"));
+		repository.addField(createConstant("SELECT_ALL", select + ((orderField == null)?"":" ORDER BY " + delimiter + orderField.getDBField() + delimiter)));
+		repository.addField(createConstant("SELECT_PAGE", select + " ORDER BY id LIMIT ? OFFSET ?"));
+		repository.addField(createConstant("COUNT", "SELECT COUNT(*) FROM " + table));
+		repository.addField(createConstant("INSERT", "INSERT INTO " + table + " (" + JdbcUtils.getColumnList(inserted, delimiter) + ") VALUES (" + JdbcUtils.getParameterList(inserted.size()) + ")"));
+		repository.addField(createConstant("UPDATE", "UPDATE " + table + " SET " + JdbcUtils.getAssignmentList(updated, delimiter) + " WHERE id = ?"));
+		repository.addField(createConstant("DELETE", "DELETE FROM " + table + " WHERE id = ?"));
+
+		// the parents keeping lists of these are told of every write to a row referring to them
+		List<JavaField> cached = getCachedReferences(jc);
+		boolean modified = !cached.isEmpty();
+		if (modified) {
+			addModifications(repository, jc, cached);
+		}
+
+		String connection = JavaType.of(config.getConnectionProvider()).getJustClassName() + ".getConnection()";
+		JavaParameter id = new JavaParameter(JavaType.LONG, "id");
+
+		JavaMethod jm = new JavaMethod(jc, "get");
+		jm.addParameter(id);
+		jm.setBody(new Coder()
+			.println(2, "if (id == null) return null;")
+			.print(0, statement(connection, "SELECT_BY_ID",
+				"statement.setLong(1, id);",
+				"try (ResultSet resultSet = statement.executeQuery()) {",
+				"\treturn resultSet.next()?" + mapper + ".map(resultSet):null;",
+				"}"
+			)).toString()
+		);
+		addStaticMethod(repository, jm);
+
+		JavaType list = JavaType.of("java.util.List", jc.getJavaType());
+		jm = new JavaMethod(list, "list");
+		jm.setBody(statement(connection, "SELECT_ALL",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\treturn " + mapper + ".mapAll(resultSet);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(list, "list");
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "offset"));
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "limit"));
+		jm.setBody(statement(connection, "SELECT_PAGE",
+			"statement.setInt(1, limit);",
+			"statement.setInt(2, offset);",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\treturn " + mapper + ".mapAll(resultSet);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		boolean referenced = false;
+		for(JavaField jf : columns) {
+			if (jf.isReferenceField() && !jf.getReferences().isEnum()) {
+				addReferenceMethods(repository, jc, jf, select, connection);
+				referenced = true;
+			}
+		}
+		if (referenced) {
+			addStream(repository, jc);
+		}
+
+		jm = new JavaMethod(JavaType.PLONG, "count");
+		jm.setBody(statement(connection, "COUNT",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\tresultSet.next();",
+			"\treturn resultSet.getLong(1);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		JavaType statementType = JavaType.of("java.sql.PreparedStatement");
+		JavaParameter bean = new JavaParameter(jc.getJavaType(), "bean");
+		Coder coder = new Coder();
+		for(int i = 0; i < inserted.size(); i++) {
+			coder.println(2, JdbcUtils.write(inserted.get(i), "bean", "statement", (i == 0)?"first":"first + " + i));
+		}
+		jm = new JavaMethod(JavaType.VOID, "bindInsert");
+		jm.setScope("private");
+		jm.addParameter(new JavaParameter(statementType, "statement"));
+		jm.addParameter(bean);
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "first"));
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody(coder.toString());
+		addStaticMethod(repository, jm);
+
+		coder = new Coder();
+		for(int i = 0; i < updated.size(); i++) {
+			coder.println(2, JdbcUtils.write(updated.get(i), "bean", "statement", String.valueOf(i + 1)));
+		}
+		coder.print(2, "statement.setLong(" + (updated.size() + 1) + ", bean.getId());");
+		jm = new JavaMethod(JavaType.VOID, "bindUpdate");
+		jm.setScope("private");
+		jm.addParameter(new JavaParameter(statementType, "statement"));
+		jm.addParameter(bean);
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody(coder.toString());
+		addStaticMethod(repository, jm);
+
+		boolean createdAt = jc.hasField("createdAt");
+		boolean updatedAt = jc.hasField("updatedAt");
+		if (createdAt || updatedAt) {
+			repository.addImport(JavaType.DATE_TIME);
+		}
+
+		jm = new JavaMethod(JavaType.VOID, "insert");
+		jm.addParameter(bean);
+		coder = new Coder();
+		if (createdAt) {
+			coder.println(2, "LocalDateTime now = LocalDateTime.now();");
+			coder.println(2, "bean.setCreatedAt(now);");
+			coder.println(2, "bean.setUpdatedAt(now);");
+		}
+		List<String> lines = new ArrayList<String>();
+		lines.add("bindInsert(statement, bean, 1);");
+		lines.add("statement.executeUpdate();");
+		lines.add("try (ResultSet keys = statement.getGeneratedKeys()) {");
+		lines.add("\tkeys.next();");
+		lines.add("\tbean.setId(keys.getLong(1));");
+		lines.add("}");
+		if (modified) {
+			lines.add("modified(bean);");
+		}
+		// the key asked for by name, drivers returning every column otherwise start with another
+		jm.setBody(coder.print(0, statement(connection, "INSERT", new String[] {"id"}, lines.toArray(new String[lines.size()]))).toString());
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.VOID, "update");
+		jm.addParameter(bean);
+		coder = new Coder();
+		if (updatedAt) {
+			coder.println(2, "bean.setUpdatedAt(LocalDateTime.now());");
+		}
+		lines = new ArrayList<String>();
+		lines.add("bindUpdate(statement, bean);");
+		lines.add("statement.executeUpdate();");
+		if (modified) {
+			// the row may have referred to other parents before
+			coder.println(2, jc.getName() + " previous = get(bean.getId());");
+			lines.add("modified(previous);");
+			lines.add("modified(bean);");
+		}
+		jm.setBody(coder.print(0, statement(connection, "UPDATE", lines.toArray(new String[lines.size()]))).toString());
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.VOID, "save");
+		jm.addParameter(new JavaParameter(jc.getJavaType(), "bean"));
+		jm.setBody(new Coder()
+			.println(2, "if (bean.getId() == null) {")
+			.println(3, "insert(bean);")
+			.println(2, "} else {")
+			.println(3, "update(bean);")
+			.print(2, "}")
+			.toString()
+		);
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.VOID, "delete");
+		jm.addParameter(id);
+		coder = new Coder();
+		lines = new ArrayList<String>();
+		lines.add("statement.setLong(1, id);");
+		lines.add("statement.executeUpdate();");
+		if (modified) {
+			coder.println(2, jc.getName() + " previous = get(id);");
+			lines.add("modified(previous);");
+		}
+		jm.setBody(coder.print(0, statement(connection, "DELETE", lines.toArray(new String[lines.size()]))).toString());
+		addStaticMethod(repository, jm);
+
+		addBulkMethods(repository, jc, inserted, connection, modified);
+		return repository;
+	}
+
+	/**
+	 * Per reference a parent caches its list of these through, a count of the writes to the
+	 * rows referring to each parent, and modified(bean) counting one for each parent the bean
+	 * refers to.  Parent ids share MODIFICATION_STRIPES counters, so a write now and then makes
+	 * a parent other than its own load again.
+	 */
+	private void addModifications(JavaClass repository, JavaClass jc, List<JavaField> references) {
+		JavaType counters = JavaType.of("java.util.concurrent.atomic.AtomicLongArray");
+		repository.addImport(counters);
+		JavaField stripes = new JavaField(JavaType.of("int"), "MODIFICATION_STRIPES");
+		stripes.setStatic(true);
+		stripes.setFinal(true);
+		stripes.setValue("1024");
+		repository.addField(stripes);
+
+		Coder coder = new Coder();
+		coder.println(2, "if (bean == null) return;");
+		for(JavaField jf : references) {
+			String name = jf.getName();
+			String getter = "bean.get" + StringUtils.capitalize(name) + "()";
+			String field = "MODIFICATIONS_BY_" + jf.getDBField().toUpperCase();
+			JavaField modifications = new JavaField(counters, field);
+			modifications.setStatic(true);
+			modifications.setFinal(true);
+			modifications.setValue("new AtomicLongArray(MODIFICATION_STRIPES)");
+			repository.addField(modifications);
+
+			JavaMethod jm = new JavaMethod(JavaType.PLONG, "getModificationsBy" + StringUtils.capitalize(name));
+			jm.addParameter(new JavaParameter(JavaType.LONG, name));
+			jm.setBody("\t\treturn (" + name + " == null)?0:" + field + ".get(stripe(" + name + "));");
+			addStaticMethod(repository, jm);
+
+			coder.println(2, "if (" + getter + " != null) {");
+			coder.println(3, field + ".incrementAndGet(stripe(" + getter + "));");
+			coder.println(2, "}");
+		}
+		JavaMethod jm = new JavaMethod(JavaType.VOID, "modified");
+		jm.setScope("private");
+		jm.addParameter(new JavaParameter(jc.getJavaType(), "bean"));
+		jm.setBody(coder.toString());
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.of("int"), "stripe");
+		jm.setScope("private");
+		jm.addParameter(new JavaParameter(JavaType.PLONG, "id"));
+		jm.setBody("\t\treturn (int)(id ^ (id >>> 32)) & (MODIFICATION_STRIPES - 1);");
+		addStaticMethod(repository, jm);
+	}
+
+	/** @return the references of <code>jc</code> to parents keeping their lists of it, see {@link #isReverseReferenceCached} */
+	private List<JavaField> getCachedReferences(JavaClass jc) {
+		List<JavaField> references = new ArrayList<JavaField>();
+		for(JavaField jf : JdbcUtils.getColumns(jc)) {
+			if (jf.isReferenceField() && !jf.getReferences().isEnum() && isReverseReferenceCached(jf.getReferences())) {
+				references.add(jf);
 			}
 		}
+		return references;
+	}
+
+	/**
+	 * getByIds, saveAll, insertAll, updateAll and deleteByIds, in batches of database.batchsize rows.
+	 * Databases binding arrays select and delete by an array of ids and insert each batch as
+	 * a single UNNEST of one array per column, with ids taken from the sequence beforehand so
+	 * each bean gets its own row's.  The others use IN lists and multi-row VALUES, as many rows
+	 * as fit in a statement's parameters and a class file constant.
+	 */
+	private void addBulkMethods(JavaClass repository, JavaClass jc, List<JavaField> inserted, String connection, boolean modified) {
+		DBScripter dbScripter = DB_SCRIPTER.get(config.getDatabaseType());
+		List<String> arrayTypes = new ArrayList<String>();
+		for(JavaField jf : inserted) {
+			arrayTypes.add((dbScripter == null)?null:dbScripter.getArrayType(jf));
+		}
+		boolean arrays = !arrayTypes.contains(null);
+		String name = jc.getName();
+		JavaType list = JavaType.of("java.util.List", jc.getJavaType());
+		boolean createdAt = jc.hasField("createdAt");
+		boolean updatedAt = jc.hasField("updatedAt");
+
+		JavaField batchSize = new JavaField(JavaType.of("int"), "BATCH_SIZE");
+		batchSize.setVisibility(Visibility.Public);
+		batchSize.setStatic(true);
+		batchSize.setFinal(true);
+		batchSize.setValue(String.valueOf(config.getDatabaseBatchSize()));
+		repository.addField(batchSize);
+
+		String columns = JdbcUtils.getColumnList(inserted, getColumnDelimiter());
+		if (arrays) {
+			// UNNEST's rows, and so the keys RETURNING hands back, aren't in any order
+			repository.addField(createConstant("NEXT_IDS", "SELECT nextval(pg_get_serial_sequence('" + jc.getTableName() + "', 'id')) FROM generate_series(1, ?)"));
+			repository.addField(createConstant("INSERT_ARRAYS", "INSERT INTO " + jc.getTableName() + " (id, " + columns + ") SELECT * FROM UNNEST(" + JdbcUtils.getParameterList(inserted.size() + 1) + ")"));
+			repository.addField(createConstant("DELETE_ARRAY", "DELETE FROM " + jc.getTableName() + " WHERE id = ANY(?)"));
+			repository.addImport(JavaType.of("java.sql.Connection"));
+		} else {
+			String insert = "INSERT INTO " + jc.getTableName() + " (" + columns + ") VALUES ";
+			String row = "(" + JdbcUtils.getParameterList(inserted.size()) + ")";
+			int rowsPerInsert = Math.min(config.getDatabaseBatchSize(), Math.min(MAX_PARAMETERS / Math.max(1, inserted.size()), (MAX_CONSTANT - insert.length()) / (row.length() + 2)));
+			StringBuilder rows = new StringBuilder();
+			for(int i = 0; i < Math.max(1, rowsPerInsert); i++) {
+				rows.append((i == 0)?"":", ").append(row);
+			}
+			repository.addField(createConstant("INSERT_ROWS", insert + rows));
+
+			JavaField rowsField = new JavaField(JavaType.of("int"), "ROWS_PER_INSERT");
+			rowsField.setStatic(true);
+			rowsField.setFinal(true);
+			rowsField.setValue(String.valueOf(Math.max(1, rowsPerInsert)));
+			repository.addField(rowsField);
+
+			JavaMethod jm = new JavaMethod(JavaType.VOID, "readIds");
+			jm.setScope("private");
+			jm.addParameter(new JavaParameter(JavaType.of("java.sql.PreparedStatement"), "statement"));
+			jm.addParameter(new JavaParameter(list, "beans"));
+			jm.addParameter(new JavaParameter(JavaType.of("int"), "first"));
+			jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+			jm.setBody(new Coder()
+				.println(2, "try (ResultSet keys = statement.getGeneratedKeys()) {")
+				.println(3, "for(int i = first; keys.next(); i++) {")
+				.println(4, "beans.get(i).setId(keys.getLong(1));")
+				.println(3, "}")
+				.print(2, "}")
+				.toString()
+			);
+			addStaticMethod(repository, jm);
+		}
+
+		addGetByIds(repository, jc, arrays, connection);
+
+		repository.addImport(JavaType.of("java.util.ArrayList"));
+		JavaMethod jm = new JavaMethod(JavaType.VOID, "saveAll");
+		jm.addParameter(new JavaParameter(list, "beans"));
+		jm.setBody(new Coder()
+			.println(2, "List<" + name + "> inserted = new ArrayList<" + name + ">();")
+			.println(2, "List<" + name + "> updated = new ArrayList<" + name + ">();")
+			.println(2, "for(" + name + " bean : beans) {")
+			.println(3, "if (bean.getId() == null) {")
+			.println(4, "inserted.add(bean);")
+			.println(3, "} else {")
+			.println(4, "updated.add(bean);")
+			.println(3, "}")
+			.println(2, "}")
+			.println(2, "insertAll(inserted);")
+			.print(2, "updateAll(updated);")
+			.toString()
+		);
+		addStaticMethod(repository, jm);
+
+		Coder coder = new Coder();
+		coder.println(2, "if (beans.isEmpty()) return;");
+		if (createdAt) {
+			coder.println(2, "LocalDateTime now = LocalDateTime.now();");
+			coder.println(2, "for(" + name + " bean : beans) {");
+			coder.println(3, "bean.setCreatedAt(now);");
+			coder.println(3, "bean.setUpdatedAt(now);");
+			coder.println(2, "}");
+		}
+		if (arrays) {
+			coder.println(2, "try (PreparedStatement ids = " + connection + ".prepareStatement(NEXT_IDS);");
+			coder.println(4, "PreparedStatement statement = ids.getConnection().prepareStatement(INSERT_ARRAYS)) {");
+			coder.println(3, "Connection connection = statement.getConnection();");
+			coder.println(3, "for(int i = 0; i < beans.size(); i += BATCH_SIZE) {");
+			coder.println(4, "List<" + name + "> batch = beans.subList(i, Math.min(i + BATCH_SIZE, beans.size()));");
+			coder.println(4, "Object[][] values = new Object[" + (inserted.size() + 1) + "][batch.size()];");
+			coder.println(4, "ids.setInt(1, batch.size());");
+			coder.println(4, "try (ResultSet keys = ids.executeQuery()) {");
+			coder.println(5, "for(int j = 0; keys.next(); j++) {");
+			coder.println(6, "values[0][j] = keys.getLong(1);");
+			coder.println(5, "}");
+			coder.println(4, "}");
+			coder.println(4, "for(int j = 0; j < batch.size(); j++) {");
+			coder.println(5, name + " bean = batch.get(j);");
+			for(int i = 0; i < inserted.size(); i++) {
+				coder.println(5, "values[" + (i + 1) + "][j] = " + JdbcUtils.getValue(inserted.get(i), "bean") + ";");
+			}
+			coder.println(4, "}");
+			coder.println(4, "statement.setArray(1, connection.createArrayOf(\"int8\", values[0]));");
+			for(int i = 0; i < inserted.size(); i++) {
+				coder.println(4, "statement.setArray(" + (i + 2) + ", connection.createArrayOf(\"" + arrayTypes.get(i) + "\", values[" + (i + 1) + "]));");
+			}
+			coder.println(4, "statement.executeUpdate();");
+			coder.println(4, "for(int j = 0; j < batch.size(); j++) {");
+			coder.println(5, "batch.get(j).setId((Long)values[0][j]);");
+			if (modified) {
+				coder.println(5, "modified(batch.get(j));");
+			}
+			coder.println(4, "}");
+			coder.println(3, "}");
+		} else {
+			coder.println(2, "int rows = beans.size() - beans.size() % ROWS_PER_INSERT;");
+			coder.println(2, "try (PreparedStatement statement = " + connection + ".prepareStatement(INSERT_ROWS, new String[] {\"id\"})) {");
+			coder.println(3, "for(int i = 0; i < rows; i += ROWS_PER_INSERT) {");
+			coder.println(4, "for(int j = 0; j < ROWS_PER_INSERT; j++) {");
+			coder.println(5, "bindInsert(statement, beans.get(i + j), j * " + inserted.size() + " + 1);");
+			coder.println(4, "}");
+			coder.println(4, "statement.executeUpdate();");
+			coder.println(4, "readIds(statement, beans, i);");
+			if (modified) {
+				coder.println(4, "for(int j = i; j < i + ROWS_PER_INSERT; j++) {");
+				coder.println(5, "modified(beans.get(j));");
+				coder.println(4, "}");
+			}
+			coder.println(3, "}");
+			coder.println(2, "} catch (SQLException e) {");
+			coder.println(3, "throw new RuntimeException(e);");
+			coder.println(2, "}");
+			coder.println(2, "if (rows == beans.size()) return;");
+			coder.println(2, "try (PreparedStatement statement = " + connection + ".prepareStatement(INSERT, new String[] {\"id\"})) {");
+			coder.println(3, "for(int i = rows; i < beans.size(); i++) {");
+			coder.println(4, "bindInsert(statement, beans.get(i), 1);");
+			coder.println(4, "statement.addBatch();");
+			coder.println(3, "}");
+			coder.println(3, "statement.executeBatch();");
+			coder.println(3, "readIds(statement, beans, rows);");
+			if (modified) {
+				coder.println(3, "for(int i = rows; i < beans.size(); i++) {");
+				coder.println(4, "modified(beans.get(i));");
+				coder.println(3, "}");
+			}
+		}
+		coder.println(2, "} catch (SQLException e) {");
+		coder.println(3, "throw new RuntimeException(e);");
+		coder.print(2, "}");
+		jm = new JavaMethod(JavaType.VOID, "insertAll");
+		jm.addParameter(new JavaParameter(list, "beans"));
+		jm.setBody(coder.toString());
+		addStaticMethod(repository, jm);
+
+		coder = new Coder();
+		if (updatedAt) {
+			coder.println(2, "LocalDateTime now = LocalDateTime.now();");
+		}
+		if (modified) {
+			coder.println(2, "List<Long> ids = new ArrayList<Long>();");
+			coder.println(2, "for(" + name + " bean : beans) {");
+			coder.println(3, "ids.add(bean.getId());");
+			coder.println(2, "}");
+			coder.println(2, "Map<Long, " + name + "> previous = getByIds(ids);");
+		}
+		List<String> lines = new ArrayList<String>();
+		lines.add("for(int i = 0; i < beans.size(); i++) {");
+		if (updatedAt) {
+			lines.add("\tbeans.get(i).setUpdatedAt(now);");
+		}
+		lines.add("\tbindUpdate(statement, beans.get(i));");
+		lines.add("\tstatement.addBatch();");
+		lines.add("\tif ((i + 1) % BATCH_SIZE == 0) {");
+		lines.add("\t\tstatement.executeBatch();");
+		lines.add("\t}");
+		lines.add("}");
+		lines.add("statement.executeBatch();");
+		if (modified) {
+			lines.add("for(" + name + " bean : previous.values()) {");
+			lines.add("\tmodified(bean);");
+			lines.add("}");
+			lines.add("for(" + name + " bean : beans) {");
+			lines.add("\tmodified(bean);");
+			lines.add("}");
+		}
+		jm = new JavaMethod(JavaType.VOID, "updateAll");
+		jm.addParameter(new JavaParameter(list, "beans"));
+		jm.setBody(coder.print(0, statement(connection, "UPDATE", lines.toArray(new String[lines.size()]))).toString());
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.VOID, "deleteByIds");
+		jm.addParameter(new JavaParameter(JavaType.of("long[]"), "ids"));
+		coder = new Coder();
+		lines = new ArrayList<String>();
+		if (modified) {
+			coder.println(2, "List<Long> list = new ArrayList<Long>();");
+			coder.println(2, "for(long id : ids) {");
+			coder.println(3, "list.add(id);");
+			coder.println(2, "}");
+			coder.println(2, "Map<Long, " + name + "> previous = getByIds(list);");
+		}
+		if (arrays) {
+			lines.add("Long[] values = new Long[ids.length];");
+			lines.add("for(int i = 0; i < ids.length; i++) {");
+			lines.add("\tvalues[i] = ids[i];");
+			lines.add("}");
+			lines.add("statement.setArray(1, statement.getConnection().createArrayOf(\"int8\", values));");
+			lines.add("statement.executeUpdate();");
+		} else {
+			lines.add("for(int i = 0; i < ids.length; i++) {");
+			lines.add("\tstatement.setLong(1, ids[i]);");
+			lines.add("\tstatement.addBatch();");
+			lines.add("\tif ((i + 1) % BATCH_SIZE == 0) {");
+			lines.add("\t\tstatement.executeBatch();");
+			lines.add("\t}");
+			lines.add("}");
+			lines.add("statement.executeBatch();");
+		}
+		if (modified) {
+			lines.add("for(" + name + " bean : previous.values()) {");
+			lines.add("\tmodified(bean);");
+			lines.add("}");
+		}
+		jm.setBody(coder.print(0, statement(connection, arrays?"DELETE_ARRAY":"DELETE", lines.toArray(new String[lines.size()]))).toString());
+		addStaticMethod(repository, jm);
+	}
+
+	/**
+	 * The beans referring to one through <code>jf</code>, in id order: all of them, a page
+	 * by offset, a page after an id, their count and a stream reading as it goes.
+	 */
+	private void addReferenceMethods(JavaClass repository, JavaClass jc, JavaField jf, String select, String connection) {
+		String mapper = "Generated" + jc.getName() + "Mapper";
+		String by = "By" + StringUtils.capitalize(jf.getName());
+		String constant = "SELECT_BY_" + jf.getDBField().toUpperCase();
+		String where = " WHERE " + getColumnDelimiter() + jf.getDBField() + getColumnDelimiter() + " = ?";
+		repository.addField(createConstant(constant, select + where + " ORDER BY id"));
+		repository.addField(createConstant(constant + "_PAGE", select + where + " ORDER BY id LIMIT ? OFFSET ?"));
+		repository.addField(createConstant(constant + "_AFTER", select + where + " AND id > ? ORDER BY id LIMIT ?"));
+		repository.addField(createConstant("COUNT_BY_" + jf.getDBField().toUpperCase(), "SELECT COUNT(*) FROM " + jc.getTableName() + where));
+		JavaType list = JavaType.of("java.util.List", jc.getJavaType());
+		JavaParameter id = new JavaParameter(JavaType.LONG, jf.getName());
+		JavaParameter limit = new JavaParameter(JavaType.of("int"), "limit");
+
+		JavaMethod jm = new JavaMethod(list, "list" + by);
+		jm.addParameter(id);
+		jm.setBody(statement(connection, constant,
+			"statement.setObject(1, " + jf.getName() + ");",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\treturn " + mapper + ".mapAll(resultSet);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(list, "list" + by);
+		jm.addParameter(id);
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "offset"));
+		jm.addParameter(limit);
+		jm.setBody(statement(connection, constant + "_PAGE",
+			"statement.setObject(1, " + jf.getName() + ");",
+			"statement.setInt(2, limit);",
+			"statement.setInt(3, offset);",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\treturn " + mapper + ".mapAll(resultSet);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		// keyset paging, the next page starts after the last id of this one however deep it is
+		jm = new JavaMethod(list, "list" + by + "After");
+		jm.addParameter(id);
+		jm.addParameter(new JavaParameter(JavaType.PLONG, "afterId"));
+		jm.addParameter(limit);
+		jm.setBody(statement(connection, constant + "_AFTER",
+			"statement.setObject(1, " + jf.getName() + ");",
+			"statement.setLong(2, afterId);",
+			"statement.setInt(3, limit);",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\treturn " + mapper + ".mapAll(resultSet);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.PLONG, "count" + by);
+		jm.addParameter(id);
+		jm.setBody(statement(connection, "COUNT_BY_" + jf.getDBField().toUpperCase(),
+			"statement.setObject(1, " + jf.getName() + ");",
+			"try (ResultSet resultSet = statement.executeQuery()) {",
+			"\tresultSet.next();",
+			"\treturn resultSet.getLong(1);",
+			"}"
+		));
+		addStaticMethod(repository, jm);
+
+		jm = new JavaMethod(JavaType.of("java.util.stream.Stream", jc.getJavaType()), "stream" + by);
+		jm.addParameter(id);
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "fetchSize"));
+		jm.setBody(new Coder()
+			.println(2, "try {")
+			.println(3, "return stream(" + connection + ".prepareStatement(" + constant + "), " + jf.getName() + ", fetchSize);")
+			.println(2, "} catch (SQLException e) {")
+			.println(3, "throw new RuntimeException(e);")
+			.print(2, "}")
+			.toString()
+		);
+		addStaticMethod(repository, jm);
+	}
+
+	/**
+	 * stream(statement, id, fetchSize), the beans of the rows of the statement selecting by
+	 * the id, mapped as they're read.  The statement is closed with the stream, or if the
+	 * query fails.
+	 */
+	private void addStream(JavaClass repository, JavaClass jc) {
+		String name = jc.getName();
+		repository.addImport(JavaType.of("java.util.Spliterator"));
+		repository.addImport(JavaType.of("java.util.Spliterators"));
+		repository.addImport(JavaType.of("java.util.function.Consumer"));
+		repository.addImport(JavaType.of("java.util.stream.StreamSupport"));
+		JavaMethod jm = new JavaMethod(JavaType.of("java.util.stream.Stream", jc.getJavaType()), "stream");
+		jm.setScope("private");
+		jm.addParameter(new JavaParameter(JavaType.of("java.sql.PreparedStatement"), "statement"));
+		jm.addParameter(new JavaParameter(JavaType.LONG, "id"));
+		jm.addParameter(new JavaParameter(JavaType.of("int"), "fetchSize"));
+		jm.addThrower(JdbcUtils.SQL_EXCEPTION);
+		jm.setBody(new Coder()
+			.println(2, "final ResultSet resultSet;")
+			.println(2, "try {")
+			.println(3, "statement.setFetchSize(fetchSize);")
+			.println(3, "statement.setObject(1, id);")
+			.println(3, "resultSet = statement.executeQuery();")
+			.println(2, "} catch (SQLException e) {")
+			.println(3, "statement.close();")
+			.println(3, "throw e;")
+			.println(2, "}")
+			.println(2, "return StreamSupport.stream(new Spliterators.AbstractSpliterator<" + name + ">(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {")
+			.println(3, "public boolean tryAdvance(Consumer<? super " + name + "> action) {")
+			.println(4, "try {")
+			.println(5, "if (!resultSet.next()) return false;")
+			.println(5, "action.accept(Generated" + name + "Mapper.map(resultSet));")
+			.println(5, "return true;")
+			.println(4, "} catch (SQLException e) {")
+			.println(5, "throw new RuntimeException(e);")
+			.println(4, "}")
+			.println(3, "}")
+			.println(2, "}, false).onClose(new Runnable() {")
+			.println(3, "public void run() {")
+			.println(4, "try {")
+			.println(5, "statement.close();")
+			.println(4, "} catch (SQLException e) {")
+			.println(5, "throw new RuntimeException(e);")
+			.println(4, "}")
+			.println(3, "}")
+			.print(2, "});")
+			.toString()
+		);
+		addStaticMethod(repository, jm);
+	}
+
+	/**
+	 * getByIds, the beans with the ids, by id.  IN lists are always IDS_PER_SELECT long, BATCH_SIZE
+	 * or as many as fit in a statement, the last one padded with its last id.
+	 */
+	private void addGetByIds(JavaClass repository, JavaClass jc, boolean arrays, String connection) {
+		String name = jc.getName();
+		String select = "SELECT " + JdbcUtils.getColumnList(JdbcUtils.getColumns(jc), getColumnDelimiter()) + " FROM " + jc.getTableName() + " WHERE id ";
+		repository.addImport(JavaType.of("java.util.Collection"));
+		repository.addImport(JavaType.of("java.util.HashMap"));
+		repository.addImport(JavaType.of("java.util.Map"));
+
+		List<String> lines = new ArrayList<String>();
+		lines.add("Long[] values = ids.toArray(new Long[ids.size()]);");
+		if (arrays) {
+			repository.addField(createConstant("SELECT_BY_IDS", select + "= ANY(?)"));
+			lines.add("statement.setArray(1, statement.getConnection().createArrayOf(\"int8\", values));");
+			lines.add("try (ResultSet resultSet = statement.executeQuery()) {");
+			lines.add("\twhile(resultSet.next()) {");
+			lines.add("\t\t" + name + " bean = Generated" + name + "Mapper.map(resultSet);");
+			lines.add("\t\tbeans.put(bean.getId(), bean);");
+			lines.add("\t}");
+			lines.add("}");
+		} else {
+			int idsPerSelect = Math.max(1, Math.min(config.getDatabaseBatchSize(), Math.min(MAX_PARAMETERS, (MAX_CONSTANT - select.length() - 5) / 3)));
+			repository.addField(createConstant("SELECT_BY_IDS", select + "IN (" + JdbcUtils.getParameterList(idsPerSelect) + ")"));
+			JavaField ids = new JavaField(JavaType.of("int"), "IDS_PER_SELECT");
+			ids.setStatic(true);
+			ids.setFinal(true);
+			ids.setValue(String.valueOf(idsPerSelect));
+			repository.addField(ids);
+			lines.add("for(int i = 0; i < values.length; i += IDS_PER_SELECT) {");
+			lines.add("\tfor(int j = 0; j < IDS_PER_SELECT; j++) {");
+			lines.add("\t\tstatement.setLong(j + 1, values[Math.min(i + j, values.length - 1)]);");
+			lines.add("\t}");
+			lines.add("\ttry (ResultSet resultSet = statement.executeQuery()) {");
+			lines.add("\t\twhile(resultSet.next()) {");
+			lines.add("\t\t\t" + name + " bean = Generated" + name + "Mapper.map(resultSet);");
+			lines.add("\t\t\tbeans.put(bean.getId(), bean);");
+			lines.add("\t\t}");
+			lines.add("\t}");
+			lines.add("}");
+		}
+		JavaMethod jm = new JavaMethod(JavaType.of("java.util.Map", JavaType.LONG, jc.getJavaType()), "getByIds");
+		jm.addParameter(new JavaParameter(JavaType.of("java.util.Collection", JavaType.LONG), "ids"));
+		jm.setBody(new Coder()
+			.println(2, "Map<Long, " + name + "> beans = new HashMap<Long, " + name + ">();")
+			.println(2, "if (ids.isEmpty()) return beans;")
+			.println(0, statement(connection, "SELECT_BY_IDS", lines.toArray(new String[lines.size()])))
+			.print(2, "return beans;")
+			.toString()
+		);
+		addStaticMethod(repository, jm);
+	}
+
+	private void addStaticMethod(JavaClass jclass, JavaMethod jm) {
+		jm.setStatic(true);
+		jclass.addMethod(jm);
+	}
+
+	/** @return <code>lines</code> run on the statement prepared from <code>sql</code>, SQLExceptions rethrown unchecked */
+	private String statement(String connection, String sql, String...lines) {
+		return statement(connection, sql, null, lines);
+	}
+
+	/** @param keys the columns of the generated keys the statement returns, null for none */
+	private String statement(String connection, String sql, String[] keys, String[] lines) {
+		if (keys != null) {
+			sql += ", new String[] {\"" + StringUtils.join(keys, "\", \"") + "\"}";
+		}
+		Coder coder = new Coder();
+		coder.println(2, "try (PreparedStatement statement = " + connection + ".prepareStatement(" + sql + ")) {");
+		for(String line : lines) {
+			coder.println(3, line);
+		}
+		return coder
+			.println(2, "} catch (SQLException e) {")
+			.println(3, "throw new RuntimeException(e);")
+			.print(2, "}")
+			.toString();
+	}
+
+	private JavaField createConstant(String name, String value) {
+		JavaField jf = new JavaField(JavaType.STRING, name);
+		jf.setVisibility(Visibility.Public);
+		jf.setStatic(true);
+		jf.setFinal(true);
+		jf.setValue("\"" + StringEscapeUtils.escapeJava(value) + "\"");
+		return jf;
+	}
+
+	private String getColumnDelimiter() {
+		DBScripter dbScripter = DB_SCRIPTER.get(config.getDatabaseType());
+		return (dbScripter == null)?"":dbScripter.getColumnDelimiter();
 	}
 
 	private JavaType getDateType() {
@@ -563,20 +1774,33 @@ public class MRCGInstance {
 	}
 	
 	private void createBeans() throws Exception {
+		// decided up front, the references between beans are built before all of them are
+		if (config.getConnectionProvider() != null && config.isRowMappers()) {
+			for(BeanConfig bean : config.getBeans()) {
+				if (!isEncrypted(bean)) {
+					repositories.add(bean.getName());
+				}
+			}
+		}
+		if (logicFacade != null) {
+			for(BeanConfig bean : config.getBeans()) {
+				if (bean.isReverseReferenceCache()) {
+					System.err.println("reversereference-cache of " + bean.getName() + " is ignored, config.logicFacade writes past the repositories");
+				}
+			}
+		}
+
 		for(JavaClass jc : types.values()) {
 			if (!jc.isEnum() && !jc.isMapping()) {
 				
-				jc.setExtendsion(new JavaType(getString("config.beanInterface")));
-//				jc.addImplements(new JavaType(getString("config.beanInterface")));
+				BeanConfig bean = config.getBean(jc.getName());
+				jc.setExtendsion(JavaType.of(config.getBeanInterface()));
+//				jc.addImplements(new JavaType(config.getBeanInterface()));
 				
-				Visibility visibility = Visibility.Private;
-				String svisibility = getString("beans." + jc.getName() + ".fields-visibility");
-				if (StringUtils.isNotEmpty(svisibility)) {
-					visibility = Visibility.valueOf(svisibility);
-				}
+				Visibility visibility = bean.getFieldsVisibility();
 				
 				System.out.println("Creating bean '" + jc.getName() + "'");
-				jc.setTableName(getString("beans." + jc.getName() + ".tablename"));
+				jc.setTableName(bean.getTableName());
 				
 //				JavaField fid = new JavaField(JavaType.LONG, "id");
 				JavaField fid = Utils.createBeanProperty(jc, JavaType.LONG, "id", visibility, false);
@@ -584,24 +1808,21 @@ public class MRCGInstance {
 				fid.setOnView(true);
 				fid.setRequired(true);
 				fid.setExcludedFromJavaOutput(true);
-				Map<String, Object> map = getMap("beans." + jc.getName() + ".fields");
-				if (map == null) {
+				if (!bean.isFieldsDefined()) {
 					System.out.println("Couldn't find fields for beans." + jc.getName());
-					map = new HashMap<String, Object>();
 				}
 				
 				JavaField identitifierField = fid;
-				for(String key : map.keySet()) {
-					String def = map.get(key).toString();
-					JavaField field = buildField(jc, key, def, visibility);
+				for(FieldConfig def : bean.getFields()) {
+					JavaField field = buildField(jc, def, visibility);
 					if (field.isIdentifier()) {
 						identitifierField = field;
 					}
 				}
 				
-//				jc.setAuditFieldsPresent(getBoolean("beans." + jc.getName() + ".audit-fields", true)
+//				jc.setAuditFieldsPresent(bean.isAuditFields())
 				
-				if (getBoolean("beans." + jc.getName() + ".audit-fields", true)) {
+				if (bean.isAuditFields()) {
 					JavaField createdAt = Utils.createBeanProperty(jc, getDateType(), "createdAt", visibility, false);
 					createdAt.setOnView(true);
 					createdAt.setDbType(DBType.Date);
@@ -633,31 +1854,28 @@ public class MRCGInstance {
 //				jc.addMethod(jm);
 				
 				
-				map = getMap("beans." + jc.getName() + ".indexes");
-				if (map != null) {
-					for(String key : map.keySet()) {
-						List<Object> list = getList("beans." + jc.getName() + ".indexes." + key);
-						if (!list.isEmpty()) {
-							Index index = new Index();
-							index.addColumns(list);
-							jc.getIndexes().add(index);
-						}
+				for(List<String> columns : bean.getIndexes()) {
+					Index index = new Index();
+					for(String column : columns) {
+						index.addColumn(column);
 					}
+					jc.getIndexes().add(index);
 				}
 			}
 		}
+		// everything after this, the SQL script in particular, goes through the types in this order
+		types = Utils.orderByReference(types);
 	}
 	
-	private JavaField buildField(JavaClass jclass, String fieldName, String def, Visibility visibility) {
-		String[] parts = splitFieldDef(def);
-		LinkedHashSet<String> set = new LinkedHashSet<String>(Arrays.asList(parts));
+	private JavaField buildField(JavaClass jclass, FieldConfig def, Visibility visibility) {
+		String fieldName = def.getName();
 		JavaField field = null;
-		if ("references".equals(parts[0])) {
-			field = addReferenceProperty(fieldName, jclass, getType(parts[1]), parts);
+		if (def.isReference()) {
+			field = addReferenceProperty(fieldName, jclass, getType(def.getReferencedType()), def);
 //			field.setLabel(StringUtils.toSpacedCamelCase(field.getReferences().getName()));
 			field.setLabel(Utils.toSpacedCamelCase(StringUtils.capitalize(fieldName)));
 		} else {
-			String type = parts[0];
+			String type = def.getType();
 			int i = type.indexOf("(");
 			Integer[] scale = null;
 			if (i > 0) {
@@ -727,7 +1945,7 @@ public class MRCGInstance {
 				field.setDbType(DBType.Binary);
 			} else {
 				throw new IllegalArgumentException("Type [" + type + 
-					"] is not currently supported [" + jclass.getName() + "." + fieldName + ": " + def + "]"
+					"] is not currently supported [" + jclass.getName() + "." + fieldName + ": " + def.getDefinition() + "]"
 				);
 			}
 			
@@ -736,26 +1954,26 @@ public class MRCGInstance {
 		
 		field.setVisibility(visibility);		
 		
-		if (set.contains("label")) {
-			field.setLabel(getItemAfter(set, "label"));
+		if (def.has("label")) {
+			field.setLabel(def.getOptionAfter("label"));
 		}
 		
-		if (set.contains("default")) {
-			field.setDefaultValue(getItemAfter(set, "default"));
+		if (def.has("default")) {
+			field.setDefaultValue(def.getOptionAfter("default"));
 		}
 		
-		field.setEncrypted(set.contains("encrypted"));
+		field.setEncrypted(def.has("encrypted"));
 		
 		if (field != null) {
-			field.setOnList(set.contains("list"));
-			field.setOnView(!set.contains("noview"));
-			field.setRequired(!set.contains("null"));
-			field.setUnique(set.contains("unique"));
-			field.setIdentifier(set.contains("identifier"));
-			field.setOrder(set.contains("order"));
+			field.setOnList(def.has("list"));
+			field.setOnView(!def.has("noview"));
+			field.setRequired(!def.has("null"));
+			field.setUnique(def.has("unique"));
+			field.setIdentifier(def.has("identifier"));
+			field.setOrder(def.has("order"));
 		}
 		
-		if (set.contains("index") || set.contains("indexed")) {
+		if (def.has("index") || def.has("indexed")) {
 			field.setIndexed(true);
 		}
 		
@@ -763,17 +1981,6 @@ public class MRCGInstance {
 		
 	}
 	
-	private String getItemAfter(Set<String> set, String itemBefore) {
-		if (set.contains(itemBefore)) {
-			for(Iterator<String> iterator = set.iterator(); iterator.hasNext();) {
-				if (iterator.next().equals(itemBefore)) {
-					return iterator.hasNext()?iterator.next():null;
-				}
-			}
-		}
-		return null;
-	}
-	
 	private Integer[] getScale(String s) {
 		s = s.replace("(", "");
 		s = s.replace(")", "");
@@ -786,38 +1993,13 @@ public class MRCGInstance {
 		
 	}
 	
-	private static String[] splitFieldDef(String def) {
-		List<String> list = new ArrayList<String>();
-		StringBuilder b = new StringBuilder();
-		boolean insideQuotes = false;
-		for(char c : def.toCharArray()) {
-			if (c == ' ' && !insideQuotes) {
-				String s = b.toString().trim();
-				if (s.length() > 0) {list.add(s);}
-				b.setLength(0);
-			} else if (c == '"') {
-				String s = b.toString().trim();
-				if (s.length() > 0) {list.add(s);}
-				b.setLength(0);
-				insideQuotes = !insideQuotes;
-			} else {
-				b.append(c);
-			}
-		}
-		
-		String s = b.toString().trim();
-		if (s.length() > 0) {list.add(s);}
-		
-		return list.toArray(new String[list.size()]);
-	}
-	
-	private JavaField addReferenceProperty(String fieldName, JavaClass jclass, JavaClass refClass, String[] parts) {
+	private JavaField addReferenceProperty(String fieldName, JavaClass jclass, JavaClass refClass, FieldConfig def) {
 		JavaField jfield = null;
 		if (refClass.isEnum()) {
 			fieldName = StringUtils.capitalize(fieldName);
 			
 			jfield = new JavaField(refClass.getJavaType(), StringUtils.uncapitalize(fieldName) + "Code");
-			if (new HashSet<String>(Arrays.asList(parts)).contains("nocode")) {
+			if (def.has("nocode")) {
 				jfield = new JavaField(refClass.getJavaType(), StringUtils.uncapitalize(fieldName));
 			}
 			jfield.setDbType(DBType.Varchar);
@@ -838,13 +2020,23 @@ public class MRCGInstance {
 			jclass.addField(jfield2);
 			
 			// jclass.getReferencedObject()
-			jclass.addImport(JavaType.LOGIC_FACADE);
+			String get;
+			if (hasRepository(refClass)) {
+				jclass.addImport(getRepositoryType(refClass));
+				get = "Generated" + refClass.getName() + "Repository.get(" + jfield.getName() + ")";
+			} else {
+				jclass.addImport(logicFacade);
+				get = getLogicFacadeName() + ".get(" + refClass.getName() + ".class, " + jfield.getName() + ")";
+			}
 			JavaMethod jmethod = new JavaMethod(refClass.getJavaType(), "get" + fieldName);
 			jmethod.setBody(
-				"\t\t" + field2name + " = (" + field2name + " == null)?" + JavaType.LOGIC_FACADE.getJustClassName() + ".get(" + refClass.getName() + ".class, " + 
-				jfield.getName() + "):" + field2name + ";\n\t\treturn " + field2name + ";"
+				"\t\t" + field2name + " = (" + field2name + " == null)?" + get + ":" + field2name + ";\n\t\treturn " + field2name + ";"
 			);
 			jclass.addMethod(jmethod);
+
+			if (hasRepository(refClass)) {
+				addPrefetch(jclass, refClass, jfield, field2name);
+			}
 			
 			// if 'unique' add singular, else plural
 			
@@ -856,12 +2048,17 @@ public class MRCGInstance {
 //			String name = (fieldName == null)?jclass.getName():fieldName;
 			
 			if (isReverseReferenceEnabled(refClass.getName())) {
-				refClass.addImport(JavaType.LOGIC_FACADE);
-				JavaType jtl = new JavaType("java.util.List");
-				jtl.addType(jclass.getJavaType());
-				jmethod = new JavaMethod(jtl, "get" + Utils.pluralize(name));
-				jmethod.setBody("\t\treturn " + JavaType.LOGIC_FACADE.getJustClassName() + ".list(" + jclass.getName() + ".class, \"" + Utils.toDatabaseFormat(refClass.getName()) + "_id\", getId());");
-				refClass.addMethod(jmethod);
+				// a bean referring to the parent more than once names each list after its reference
+				String suffix = (getReferenceCount(jclass, refClass) > 1)?"By" + fieldName:"";
+				if (hasRepository(jclass)) {
+					addReverseReferences(refClass, jclass, jfield, suffix);
+				} else {
+					refClass.addImport(logicFacade);
+					JavaType jtl = JavaType.of("java.util.List", jclass.getJavaType());
+					jmethod = new JavaMethod(jtl, "get" + Utils.pluralize(name) + suffix);
+					jmethod.setBody("\t\treturn " + getLogicFacadeName() + ".list(" + jclass.getName() + ".class, \"" + jfield.getDBField() + "\", getId());");
+					refClass.addMethod(jmethod);
+				}
 			}
 			
 		}
@@ -871,17 +2068,168 @@ public class MRCGInstance {
 
 	}
 	
+	/**
+	 * A static prefetch&lt;Reference&gt;(beans) loading the references of all the beans not
+	 * loaded yet in as few queries as the repository takes, rather than one per bean.
+	 */
+	private void addPrefetch(JavaClass jclass, JavaClass refClass, JavaField idField, String field) {
+		String generated = "Generated" + jclass.getName();
+		String ids = idField.getName();
+		jclass.addImport(JavaType.of("java.util.HashSet"));
+		jclass.addImport(JavaType.of("java.util.Map"));
+		jclass.addImport(JavaType.of("java.util.Set"));
+		JavaMethod jmethod = new JavaMethod(JavaType.VOID, getPrefetchName(idField));
+		jmethod.setStatic(true);
+		// the generated class, its fields may be private
+		jmethod.addParameter(new JavaParameter(JavaType.of("java.util.List", JavaType.unimported("? extends " + generated)), "beans"));
+		jmethod.setBody(new Coder()
+			.println(2, "Set<Long> ids = new HashSet<Long>();")
+			.println(2, "for(" + generated + " bean : beans) {")
+			.println(3, "if (bean." + field + " == null && bean." + ids + " != null) {")
+			.println(4, "ids.add(bean." + ids + ");")
+			.println(3, "}")
+			.println(2, "}")
+			.println(2, "if (ids.isEmpty()) return;")
+			.println(2, "Map<Long, " + refClass.getName() + "> loaded = Generated" + refClass.getName() + "Repository.getByIds(ids);")
+			.println(2, "for(" + generated + " bean : beans) {")
+			.println(3, "if (bean." + field + " == null && bean." + ids + " != null) {")
+			.println(4, "bean." + field + " = loaded.get(bean." + ids + ");")
+			.println(3, "}")
+			.print(2, "}")
+			.toString()
+		);
+		jclass.addMethod(jmethod);
+	}
+
+	/**
+	 * get&lt;Children&gt;&lt;suffix&gt;() on <code>refClass</code>, and the variants reading part of
+	 * them: by offset, after an id, their count and a stream.  With reversereference-cache the
+	 * list is kept until the children's repository counts a write to a row referring to this one.
+	 */
+	private void addReverseReferences(JavaClass refClass, JavaClass jclass, JavaField jfield, String suffix) {
+		String plural = Utils.pluralize(jclass.getName());
+		String repository = "Generated" + jclass.getName() + "Repository";
+		String by = "By" + StringUtils.capitalize(jfield.getName());
+		String list = repository + ".list" + by + "(getId())";
+		JavaMethod getter = new JavaMethod(JavaType.of("java.util.List", jclass.getJavaType()), "get" + plural + suffix);
+		// defined by the bean already
+		if (!refClass.addMethod(getter)) return;
+		refClass.addImport(getRepositoryType(jclass));
+
+		if (isReverseReferenceCached(refClass)) {
+			String field = StringUtils.uncapitalize(plural) + suffix;
+			JavaField cache = new JavaField(getter.getReturnType(), field);
+			cache.setTransient(true);
+			cache.setAutoHandledField(true);
+			cache.setDatabaseField(false);
+			refClass.addField(cache);
+			JavaField loadedAt = new JavaField(JavaType.PLONG, field + "Modifications");
+			loadedAt.setTransient(true);
+			loadedAt.setAutoHandledField(true);
+			loadedAt.setDatabaseField(false);
+			refClass.addField(loadedAt);
+			// read before loading, a write while loading makes the next call load again
+			getter.setBody(new Coder()
+				.println(2, "long modifications = " + repository + ".getModifications" + by + "(getId());")
+				.println(2, "if (" + field + " == null || " + loadedAt.getName() + " != modifications) {")
+				.println(3, field + " = " + list + ";")
+				.println(3, loadedAt.getName() + " = modifications;")
+				.println(2, "}")
+				.print(2, "return " + field + ";")
+				.toString()
+			);
+		} else {
+			getter.setBody("\t\treturn " + list + ";");
+		}
+
+		JavaMethod jmethod = new JavaMethod(getter.getReturnType(), "get" + plural + suffix);
+		jmethod.addParameter(new JavaParameter(JavaType.of("int"), "offset"));
+		jmethod.addParameter(new JavaParameter(JavaType.of("int"), "limit"));
+		jmethod.setBody("\t\treturn " + repository + ".list" + by + "(getId(), offset, limit);");
+		refClass.addMethod(jmethod);
+
+		jmethod = new JavaMethod(getter.getReturnType(), "get" + plural + suffix + "After");
+		jmethod.addParameter(new JavaParameter(JavaType.PLONG, "afterId"));
+		jmethod.addParameter(new JavaParameter(JavaType.of("int"), "limit"));
+		jmethod.setBody("\t\treturn " + repository + ".list" + by + "After(getId(), afterId, limit);");
+		refClass.addMethod(jmethod);
+
+		jmethod = new JavaMethod(JavaType.PLONG, "get" + jclass.getName() + "Count" + suffix);
+		jmethod.setBody("\t\treturn " + repository + ".count" + by + "(getId());");
+		refClass.addMethod(jmethod);
+
+		jmethod = new JavaMethod(JavaType.of("java.util.stream.Stream", jclass.getJavaType()), "stream" + plural + suffix);
+		jmethod.addParameter(new JavaParameter(JavaType.of("int"), "fetchSize"));
+		jmethod.setBody("\t\treturn " + repository + ".stream" + by + "(getId(), fetchSize);");
+		refClass.addMethod(jmethod);
+	}
+
+	/** @return the name of the prefetch method of the reference <code>idField</code> holds the id of, e.g. prefetchCustomer */
+	private String getPrefetchName(JavaField idField) {
+		String name = idField.getName();
+		return "prefetch" + StringUtils.capitalize(name.substring(0, name.length() - "Id".length()));
+	}
+
+	private boolean hasRepository(JavaClass jclass) {
+		return repositories.contains(jclass.getName()) && !(jclass.isEnum() || jclass.isMapping());
+	}
+
+	private JavaType getRepositoryType(JavaClass jclass) {
+		return JavaType.of(basePackage + ".generated.data.Generated" + jclass.getName() + "Repository");
+	}
+
+	/** Encrypted fields are left to the logic facade, see {@link JdbcUtils#isMappable}. */
+	private boolean isEncrypted(BeanConfig bean) {
+		for(FieldConfig def : bean.getFields()) {
+			if (def.has("encrypted")) return true;
+		}
+		return false;
+	}
+
+	/** @return the logic facade's class name, for code calling it */
+	private String getLogicFacadeName() {
+		if (logicFacade == null) {
+			throw new IllegalStateException("config.logicFacade isn't set, and " + (config.getConnectionProvider() == null?"no config.connectionProvider either":"not every bean has a repository"));
+		}
+		return logicFacade.getJustClassName();
+	}
+
 	private boolean isReverseReferenceEnabled(String beanName) {
-		return !reverseReferenceEnabled?false:(getBoolean("beans." + beanName + ".reversereference", true));
+		BeanConfig bean = config.getBean(beanName);
+		return config.isReverseReference() && (bean == null || bean.isReverseReference());
+	}
+
+	/**
+	 * Whether <code>refClass</code> keeps the lists of the beans referring to it.  Only when
+	 * there's no logic facade, the repositories have to see every write for the lists to be
+	 * dropped when they change.
+	 */
+	private boolean isReverseReferenceCached(JavaClass refClass) {
+		BeanConfig bean = config.getBean(refClass.getName());
+		return bean != null && bean.isReverseReferenceCache() && logicFacade == null && isReverseReferenceEnabled(refClass.getName());
+	}
+
+	/** @return how many of the fields of <code>jclass</code> refer to <code>refClass</code> */
+	private int getReferenceCount(JavaClass jclass, JavaClass refClass) {
+		int count = 0;
+		for(FieldConfig def : config.getBean(jclass.getName()).getFields()) {
+			if (def.isReference() && getType(def.getReferencedType()) == refClass) {
+				count++;
+			}
+		}
+		return count;
 	}
 	
 	private void createEnums() throws Exception {
-		for(JavaClass jc : types.values()) {
+		for(Map.Entry<String, JavaClass> type : types.entrySet()) {
+			JavaClass jc = type.getValue();
 			if (jc.isEnum()) {
 				JavaEnum je = (JavaEnum)jc;
 				jc.setPreExisting(!jc.getCompleteName().startsWith(basePackage));
 				if (jc.isPreExisting()) continue;
-				jc.setPreExisting(getBoolean("enums." + je.getName() + ".preexisting", false));
+				// types is keyed by the definition name, which the class name can differ from
+				EnumConfig definition = config.getEnum(type.getKey());
+				jc.setPreExisting(definition.isPreExisting());
 
 		 		JavaField jf = new JavaField(JavaType.STRING, "name");
 		 		jf.setType(JavaType.STRING);
@@ -903,250 +2251,244 @@ public class MRCGInstance {
 		 		aci.setBody("\t\treturn name;");
 		 		je.addMethod(aci);
 		 		
-				int maxCodeLength = 0;
-				int maxNameLength = 0;
-				Object object = getValue("enums." + jc.getName());
-				if (object instanceof Map) {
-					Map<String, Object> map = getMap("enums." + jc.getName());
-					for(String key : map.keySet()) {
-						if ("preexisting".equals(key)) continue;
-						maxCodeLength = Math.max(maxCodeLength, key.toString().length());
-						maxNameLength = Math.max(maxNameLength, map.get(key).toString().length());
-						je.addValue(new JavaEnumValue(key, map.get(key).toString()));
-					}					
-				} else if (object instanceof List) {
-					List<Object> values = getList("enums." + jc.getName());
-					for(Object value : values) {
-						if (value instanceof String) {
-							if ("preexisting".equals(value.toString())) continue;
-							maxCodeLength = Math.max(maxCodeLength, value.toString().length());
-							maxNameLength = Math.max(maxNameLength, value.toString().length());
-							je.addValue(new JavaEnumValue(value.toString(), Utils.toSpacedCamelCase(StringUtils.capitalize(value.toString()))));
-						} else if (value instanceof Map) {
-							Map<String, Object> map = toMap(value);
-							for(String key : map.keySet()) {
-								if ("preexisting".equals(key)) continue;								
-								maxCodeLength = Math.max(maxCodeLength, key.toString().length());
-								maxNameLength = Math.max(maxNameLength, map.get(key).toString().length());
-								je.addValue(new JavaEnumValue(key, map.get(key).toString()));
-							}
-						}
-					}
+				for(Map.Entry<String, String> value : definition.getValues().entrySet()) {
+					je.addValue(new JavaEnumValue(value.getKey(), value.getValue()));
 				}
 				
-				je.setMaxCodeLength(maxCodeLength);
-				jf.setMaxLength(maxNameLength);
+				je.setMaxCodeLength(definition.getMaxCodeLength());
+				jf.setMaxLength(definition.getMaxNameLength());
 			}
 		}
 	}
 	
-	// First Pass - establish all JavaTypes
-	private void establishTypes() {
-		// Enums
-		Map<String, Object> enums = getMap("enums");
-		if (enums != null) {
-			for(String key : enums.keySet()) {
-				Object object = enums.get(key);
-				String classname = basePackage + ".bean." + key;
-				if (object instanceof String) {
-					classname = object.toString();
+	/**
+	 * Hashes each type's definition together with the definitions of the types it
+	 * references and is referenced by (reverse references add methods to the
+	 * referenced class) and the configuration shared by every type. Pre-existing
+	 * enums aren't generated, only their class name counts.
+	 */
+	private void fingerprintTypes() throws Exception {
+		String sharedFingerprint = new Fingerprint().add(generatorVersion).addNode(config.getSharedDefinition()).getHash();
+
+		Map<String, String> definitions = new TreeMap<String, String>();
+		Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+		// types is keyed by the definition name, which an enum's class name can differ from
+		Map<JavaClass, String> keys = new IdentityHashMap<JavaClass, String>();
+		for(Map.Entry<String, JavaClass> type : types.entrySet()) {
+			String key = type.getKey();
+			JavaClass jc = type.getValue();
+			Fingerprint definition = new Fingerprint();
+			if (!jc.isEnum()) {
+				definition.addNode(config.getBean(key).getDefinition());
+			} else if (jc.isPreExisting()) {
+				definition.add(jc.getCompleteName());
+			} else {
+				definition.addNode(config.getEnum(key).getDefinition());
+			}
+			definitions.put(key, definition.getHash());
+			dependencies.put(key, new TreeSet<String>());
+			keys.put(jc, key);
+		}
+		for(Map.Entry<String, JavaClass> type : types.entrySet()) {
+			for(JavaField jf : type.getValue().getFields()) {
+				String ref = keys.get(jf.getReferences());
+				if (ref != null) {
+					dependencies.get(type.getKey()).add(ref);
+					dependencies.get(ref).add(type.getKey());
 				}
-				types.put(key, new JavaEnum(classname));
 			}
 		}
 
-		// Classes
-		Map<String, Object> beans = getMap("beans");
-		if (beans != null) {
-			for(String key : beans.keySet()) {
-				JavaClass jc = new JavaClass(basePackage + ".bean", key);
-				types.put(key, jc);
+		fingerprints = new IdentityHashMap<JavaClass, String>();
+		for(Map.Entry<String, JavaClass> type : types.entrySet()) {
+			Fingerprint fingerprint = new Fingerprint().add(sharedFingerprint).add(definitions.get(type.getKey()));
+			for(String dependency : dependencies.get(type.getKey())) {
+				fingerprint.add(dependency).add(definitions.get(dependency));
 			}
-		}		
+			fingerprints.put(type.getValue(), fingerprint.getHash());
+		}
+
+		Fingerprint model = new Fingerprint().add(sharedFingerprint);
+		for(Map.Entry<String, String> entry : definitions.entrySet()) {
+			model.add(entry.getKey()).add(entry.getValue());
+		}
+		modelFingerprint = model.getHash();
 	}
 
-	private void createListActions() throws Exception {
-		for(JavaClass jc : types.values()) {
-			if(skipGui(jc)) continue;
-			if (jc.isEnum()) continue;
-			
-			String jclower = jc.getName().toLowerCase();
-			
-			JavaClass lc = new JavaClass(basePackage + ".gui.admin.action." + jclower, "List" + jc.getName() + "Action");
-			lc.setMethodSpacer("\n");
-			
-//			lc.addImport(new JavaType("net.sourceforge.stripes.action.DefaultHandler"));
-			lc.addImport(new JavaType("net.sourceforge.stripes.action.ForwardResolution"));
-			lc.addImport(new JavaType("net.sourceforge.stripes.action.Resolution"));
-			lc.addImport(new JavaType("net.sourceforge.stripes.action.UrlBinding"));
-			lc.addImport(jc.getJavaType());
-			lc.addImport(JavaType.LOGIC_FACADE);
-			
-			lc.setExtendsion(new JavaType(basePackage + ".gui.admin.action.AbstractListAction"));
-			lc.addAnnotation("@UrlBinding(\"/admin/" + jclower + "/list.action\")");
+	private String fingerprint(JavaClass jclass, String template) throws Exception {
+		return Fingerprint.of(fingerprints.get(jclass), templates.getFingerprint(new File(getResourcePath(template))));
+	}
 
-			JavaMethod jm = new JavaMethod(new JavaType("net.sourceforge.stripes.action.Resolution"), "execute");
-				jm.setBody(Utils.createListActionExecuteMethod(jclower));
-			lc.addMethod(jm);
-		
-			jm = new JavaMethod(JavaType.LONG, "_getItemCount");
-				jm.setBody("\t\treturn " + JavaType.LOGIC_FACADE.getJustClassName() + ".getCount(" + jc.getName() + ".class);");
-			lc.addMethod(jm);
-			
-			JavaType jt = new JavaType("java.util.List");
-			jt.addType(new JavaType("?"));
-			jm = new JavaMethod(jt, "_getItems");
-				jm.setBody("\t\treturn " + JavaType.LOGIC_FACADE.getJustClassName() + ".list(" + jc.getName() + ".class, getItemOn(), getItemsPerPage());");
-			lc.addMethod(jm);
-			
-			write(lc, false);
+	/** The generator version plus the newest of the generator's own class files, so rebuilding it invalidates the manifest. */
+	private String getGeneratorVersion() throws Exception {
+		CodeSource source = MRCGInstance.class.getProtectionDomain().getCodeSource();
+		if (source == null || !"file".equals(source.getLocation().getProtocol())) return GENERATOR_VERSION;
+		return GENERATOR_VERSION + "-" + lastModified(new File(source.getLocation().toURI()));
+	}
 
+	private long lastModified(File file) {
+		long lastModified = file.lastModified();
+		File[] files = file.listFiles();
+		if (files != null) {
+			for(File f : files) {
+				lastModified = Math.max(lastModified, lastModified(f));
+			}
 		}
+		return lastModified;
 	}
 
-	private Object getValue(String path) {
-		Map<String, Object> node = root;
-		String[] keys = path.split("\\.");
-		for(int i = 0; i < keys.length-1; i++) {
-			Object onode = node.get(keys[i]);
-			if ((node == null) || !(onode instanceof Map)) return null;
-			node = (Map<String, Object>)onode;
+	// First Pass - establish all JavaTypes
+	private void establishTypes() {
+		Map<String, JavaClass> established = new TreeMap<String, JavaClass>();
+		// Enums
+		for(EnumConfig definition : config.getEnums()) {
+			String classname = basePackage + ".bean." + definition.getName();
+			if (definition.getClassName() != null) {
+				classname = definition.getClassName();
+			}
+			established.put(definition.getName(), new JavaEnum(classname));
 		}
-		if (node == null) return null;
-		return node.get(keys[keys.length-1]);
+
+		// Classes
+		for(BeanConfig definition : config.getBeans()) {
+			JavaClass jc = new JavaClass(basePackage + ".bean", definition.getName());
+			established.put(definition.getName(), jc);
+		}
+		types.putAll(established);
 	}
 
-	private String getString(String path) {
-		Object o = getValue(path);
-		return (o == null)?null:o.toString();
+	private void createListActions() throws Exception {
+		scheduler.forEach(types.values(), new Task<JavaClass>() {
+			public void run(JavaClass jc) throws Exception {
+				createListAction(jc);
+			}
+		});
 	}
 
-	private boolean getBoolean(String path, boolean defaultValue) {
-		String value = getString(path);
-		if (StringUtils.isEmpty(value)) {
-			return defaultValue;
+	private void createListAction(JavaClass jc) throws Exception {
+		if(skipGui(jc)) return;
+		if (jc.isEnum()) return;
+		
+		String jclower = jc.getName().toLowerCase();
+		
+		JavaClass lc = new JavaClass(basePackage + ".gui.admin.action." + jclower, "List" + jc.getName() + "Action");
+		lc.setMethodSpacer("\n");
+		
+//			lc.addImport(new JavaType("net.sourceforge.stripes.action.DefaultHandler"));
+		lc.addImport(JavaType.of("net.sourceforge.stripes.action.ForwardResolution"));
+		lc.addImport(JavaType.of("net.sourceforge.stripes.action.Resolution"));
+		lc.addImport(JavaType.of("net.sourceforge.stripes.action.UrlBinding"));
+		lc.addImport(jc.getJavaType());
+		String count, items;
+		if (hasRepository(jc)) {
+			lc.addImport(getRepositoryType(jc));
+			count = "Generated" + jc.getName() + "Repository.count()";
+			items = "Generated" + jc.getName() + "Repository.list(getItemOn(), getItemsPerPage())";
 		} else {
-			return Boolean.valueOf(value);
+			lc.addImport(logicFacade);
+			count = getLogicFacadeName() + ".getCount(" + jc.getName() + ".class)";
+			items = getLogicFacadeName() + ".list(" + jc.getName() + ".class, getItemOn(), getItemsPerPage())";
 		}
-	}
-	
-	private List<Object> getList(String path) {
-		return toList(getValue(path));
-	}
-	
-	private Map<String, Object> getMap(String path) {
-		return toMap(getValue(path));
-	}
-	
-	private List<Object> toList(Object value) {
-		return (List<Object>)value;
-	}
+		
+		lc.setExtendsion(JavaType.of(basePackage + ".gui.admin.action.AbstractListAction"));
+		lc.addAnnotation("@UrlBinding(\"/admin/" + jclower + "/list.action\")");
+
+		JavaMethod jm = new JavaMethod(JavaType.of("net.sourceforge.stripes.action.Resolution"), "execute");
+			jm.setBody(Utils.createListActionExecuteMethod(jclower));
+		lc.addMethod(jm);
 	
-	private Map<String, Object> toMap(Object value) {
-		return (Map<String, Object>)value;
+		jm = new JavaMethod(JavaType.LONG, "_getItemCount");
+			jm.setBody("\t\treturn " + count + ";");
+		lc.addMethod(jm);
+		
+		// the references shown are loaded for the whole page at once
+		List<String> prefetches = new ArrayList<String>();
+		if (hasRepository(jc)) {
+			for(JavaField jf : jc.getListFields()) {
+				JavaClass ref = jf.getReferences();
+				if (ref != null && hasRepository(ref)) {
+					prefetches.add(jc.getName() + "." + getPrefetchName(jf) + "(items);");
+				}
+			}
+		}
+		JavaType jt = JavaType.of("java.util.List", JavaType.of("?"));
+		jm = new JavaMethod(jt, "_getItems");
+		if (prefetches.isEmpty()) {
+			jm.setBody("\t\treturn " + items + ";");
+		} else {
+			lc.addImport(JavaType.of("java.util.List"));
+			Coder coder = new Coder();
+			coder.println(2, "List<" + jc.getName() + "> items = " + items + ";");
+			for(String prefetch : prefetches) {
+				coder.println(2, prefetch);
+			}
+			jm.setBody(coder.print(2, "return items;").toString());
+		}
+		lc.addMethod(jm);
+		
+		write(lc, false);
+
 	}
-	
-	
+
 	private void write(JavaClass jclass) throws Exception {
 		write(jclass, true);
 	}
 
 	private void write(JavaClass jclass, boolean overwrite) throws Exception {
-		File file = classToFile(jclass);
-		if (!overwrite && file.exists()) {return;}
-
-		StringWriter swriter = new StringWriter();
-		jclass.out(new PrintWriter(swriter));
-	
-		String newContent = swriter.toString();
-		String currentContent = "";
-		if (file.exists()) {
-			currentContent = IOUtils.toString(new FileInputStream(file));
+		String file = classToFile(jclass);
+		if (!overwrite && sink.exists(file)) {
+			telemetry.file(null, file, null, 0, true);
+			return;
 		}
-				
-		if (!newContent.equals(currentContent)) {
-			PrintWriter out = openStream(jclass);
-			out.print(newContent);
-			out.flush();
-			out.close();		
-		}
-	}
 
-	private PrintWriter openStream(JavaClass jclass) throws Exception {
-		return openStream(jclass.getPackage(), jclass.getName());
+		Telemetry.Probe probe = telemetry.start();
+		Emitter emitter = EMITTERS.get().reset();
+		jclass.out(emitter);
+		content(file, emitter.toBytes(), true, "JavaClass", probe);
 	}
 
-	int fileCount = 0;
-	private PrintWriter openStream(String pkg, String className) throws Exception {
-		String path = sourcePath  + packageToPath(pkg);
-		new File(path).mkdirs();
-		path += "/" + className + ".java";
-		System.out.println(++fileCount + "\t" + path);
-		return new PrintWriter(new FileOutputStream(path));
-	}
+	private AtomicInteger fileCount = new AtomicInteger();
 	
 	private String packageToPath(String pkg) {
 		return pkg.replace('.', '/');
 	}
 	
-	private File classToFile(JavaClass jclass) {
-		return new File(sourcePath  + packageToPath(jclass.getPackage()), jclass.getName() + ".java");
+	private String classToFile(JavaClass jclass) {
+		return classToFile(jclass.getPackage(), jclass.getName());
 	}
 	
-	private File classToFile(String pkg, String classname) {
-		return new File(sourcePath  + packageToPath(pkg), classname + ".java");		
+	private String classToFile(String pkg, String classname) {
+		return sourcePath + packageToPath(pkg) + "/" + classname + ".java";		
 	}
 	
-	private void velocity(File file, String template, Map<String, Object> map, boolean overwrite) throws Exception {
-		if (!overwrite && file.exists()) return;
-
-		file.getParentFile().mkdirs();
-		
-		StringWriter swriter = new StringWriter();
-//		InputStream in = getClass().getClassLoader().getResourceAsStream(template);
-		InputStream in = new FileInputStream(template);
-		
-		
-		VelocityEngine ve = new VelocityEngine();
-		VelocityContext context = new VelocityContext(map);
-		ve.evaluate(context, new PrintWriter(swriter), "", new InputStreamReader(in));
-
-		String newContent = swriter.toString();
-		String currentContent = "";
-		if (file.exists()) {
-			currentContent = IOUtils.toString(new FileInputStream(file));
-		}
-
-		if (!newContent.equals(currentContent)) {
-			System.out.println(++fileCount + "\t" + file.toString());
-			PrintWriter out = new PrintWriter(new FileOutputStream(file));
-			out.print(newContent);
-			out.flush();
-			out.close();
+	private void velocity(String file, String template, Map<String, Object> map, boolean overwrite) throws Exception {
+		if (!overwrite && sink.exists(file)) {
+			telemetry.file(null, file, null, 0, true);
+			return;
 		}
+		Telemetry.Probe probe = telemetry.start();
+		content(file, templates.merge(new File(template), map), true, new File(template).getName(), probe);
 	}
 	
-	/** @return whether or not the file's contents have been overwritten */
-	private boolean content(File file, String newContent, boolean overwrite) throws Exception {
-		if (!overwrite && file.exists()) return false;
-
-		file.getParentFile().mkdirs();
-		
+	/**
+	 * @param probe started before <code>newContent</code> was rendered from <code>template</code>
+	 * @return whether or not the file's contents have been overwritten
+	 */
+	private boolean content(String file, String newContent, boolean overwrite, String template, Telemetry.Probe probe) throws Exception {
+		return content(file, newContent.getBytes(UTF8), overwrite, template, probe);
+	}
 
-		String currentContent = "";
-		if (file.exists()) {
-			currentContent = IOUtils.toString(new FileInputStream(file));
+	private boolean content(String file, byte[] bytes, boolean overwrite, String template, Telemetry.Probe probe) throws Exception {
+		if (!overwrite && sink.exists(file)) {
+			telemetry.file(null, file, template, 0, true);
+			return false;
 		}
 
-		if (!newContent.equals(currentContent)) {
-			System.out.println(++fileCount + "\t" + file.toString());
-			PrintWriter out = new PrintWriter(new FileOutputStream(file));
-			out.print(newContent);
-			out.flush();
-			out.close();
-			return true;
+		boolean changed = sink.write(file, bytes);
+		telemetry.file(probe, file, template, bytes.length, !changed);
+		if (changed) {
+			System.out.println(fileCount.incrementAndGet() + "\t" + file);
 		}
-		
-		return false;
+		return changed;
 	}	
 }
\ No newline at end of file
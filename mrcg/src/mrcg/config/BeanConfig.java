@@ -0,0 +1,101 @@
+package mrcg.config;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import mrcg.domain.Visibility;
+
+import org.apache.commons.lang.StringUtils;
+
+/** A bean's section of the definition file. */
+public class BeanConfig {
+	private final String name;
+	private final Object definition;
+	private final Visibility fieldsVisibility;
+	private final String tableName;
+	private final boolean auditFields;
+	private final boolean skipGui;
+	private final boolean reverseReference;
+	private final boolean reverseReferenceCache;
+	private final boolean fieldsDefined;
+	private final List<FieldConfig> fields;
+	private final List<List<String>> indexes;
+	private final List<String> listFields;
+	private final boolean listEdit;
+	private final boolean listView;
+
+	public BeanConfig(String name, Object definition) {
+		this.name = name;
+		this.definition = definition;
+
+		Map<String, Object> map = ProjectConfig.toMap(definition);
+		Map<String, Object> values = (map == null)?Collections.<String, Object>emptyMap():ProjectConfig.flatten(map);
+
+		String visibility = ProjectConfig.toString(values.get("fields-visibility"));
+		fieldsVisibility = StringUtils.isEmpty(visibility)?Visibility.Private:Visibility.valueOf(visibility);
+		tableName = ProjectConfig.toString(values.get("tablename"));
+		auditFields = ProjectConfig.toBoolean(values.get("audit-fields"), true);
+		skipGui = ProjectConfig.toBoolean(values.get("skipgui"), false);
+		reverseReference = ProjectConfig.toBoolean(values.get("reversereference"), true);
+		reverseReferenceCache = ProjectConfig.toBoolean(values.get("reversereference-cache"), false);
+		listFields = ProjectConfig.toStrings(values.get("list.fields"));
+		listEdit = ProjectConfig.toBoolean(values.get("list.edit"), true);
+		listView = ProjectConfig.toBoolean(values.get("list.view"), true);
+
+		Map<String, Object> fieldMap = (map == null)?null:ProjectConfig.toMap(map.get("fields"));
+		fieldsDefined = fieldMap != null;
+		List<FieldConfig> fields = new ArrayList<FieldConfig>();
+		if (fieldMap != null) {
+			for(Map.Entry<String, Object> entry : fieldMap.entrySet()) {
+				fields.add(new FieldConfig(entry.getKey(), String.valueOf(entry.getValue())));
+			}
+		}
+		this.fields = Collections.unmodifiableList(fields);
+
+		Map<String, Object> indexMap = (map == null)?null:ProjectConfig.toMap(map.get("indexes"));
+		List<List<String>> indexes = new ArrayList<List<String>>();
+		if (indexMap != null) {
+			for(Object columns : indexMap.values()) {
+				List<String> list = ProjectConfig.toStrings(columns);
+				if (!list.isEmpty()) {
+					indexes.add(list);
+				}
+			}
+		}
+		this.indexes = Collections.unmodifiableList(indexes);
+	}
+
+	public String getName() {return name;}
+	/** This bean's section as parsed. */
+	public Object getDefinition() {return definition;}
+	public Visibility getFieldsVisibility() {return fieldsVisibility;}
+	public String getTableName() {return tableName;}
+	public boolean isAuditFields() {return auditFields;}
+	public boolean isSkipGui() {return skipGui;}
+	public boolean isReverseReference() {return reverseReference;}
+	/** Whether the beans referring to this one are kept by each instance until one of them is written, when there's no config.logicFacade. */
+	public boolean isReverseReferenceCache() {return reverseReferenceCache;}
+	public boolean isFieldsDefined() {return fieldsDefined;}
+	public List<FieldConfig> getFields() {return fields;}
+	/** The columns of each index, in order. */
+	public List<List<String>> getIndexes() {return indexes;}
+	public List<String> getListFields() {return listFields;}
+	public boolean isListEdit() {return listEdit;}
+	public boolean isListView() {return listView;}
+}
\ No newline at end of file
@@ -0,0 +1,240 @@
+package mrcg.config;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.ho.yaml.Yaml;
+
+/**
+ * Loads a definition file, and the files listed in its <code>config.includes</code>,
+ * into a {@link ProjectConfig}.  Includes are resolved against the definition's
+ * directory, parsed concurrently and merged in order: maps are merged key by key,
+ * anything else is replaced, and the definition itself is merged last.  Parsed
+ * files are kept until they change, so only edited files are parsed again.
+ */
+public class DefinitionLoader {
+	private final Map<File, Parsed> parsed = new ConcurrentHashMap<File, Parsed>();
+	private List<File> files = Collections.emptyList();
+	private List<Parsed> loaded = Collections.emptyList();
+	private ProjectConfig config;
+
+	/** @return the configuration, the one from the last load if no file has changed */
+	public synchronized ProjectConfig load(File definition) throws Exception {
+		definition = definition.getAbsoluteFile();
+		Parsed root = parse(definition);
+
+		List<File> files = new ArrayList<File>();
+		files.add(definition);
+		for(String include : ProjectConfig.toStrings(getIncludes(root.node))) {
+			File file = new File(include);
+			files.add((file.isAbsolute()?file:new File(definition.getParentFile(), include)).getAbsoluteFile());
+		}
+		List<Parsed> loaded = parse(files);
+
+		if (config == null || !loaded.equals(this.loaded)) {
+			Map<String, Object> merged = new LinkedHashMap<String, Object>();
+			// the definition is first in the list, but wins over its includes
+			for(int i = 1; i < loaded.size(); i++) {
+				merge(merged, loaded.get(i).node);
+			}
+			merge(merged, root.node);
+			config = new ProjectConfig(merged);
+		}
+		this.files = Collections.unmodifiableList(files);
+		this.loaded = loaded;
+		return config;
+	}
+
+	/** The definition and the files it includes, as of the last load. */
+	public synchronized List<File> getFiles() {
+		return files;
+	}
+
+	private List<Parsed> parse(List<File> files) throws Exception {
+		List<Parsed> results = new ArrayList<Parsed>();
+		List<File> stale = new ArrayList<File>();
+		for(File file : files) {
+			Parsed p = parsed.get(file);
+			if (p == null || !p.isCurrent(file)) {
+				stale.add(file);
+			}
+		}
+
+		if (stale.size() > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(stale.size(), Runtime.getRuntime().availableProcessors()));
+			try {
+				List<Future<Parsed>> futures = new ArrayList<Future<Parsed>>();
+				for(final File file : stale) {
+					futures.add(executor.submit(new Callable<Parsed>() {
+						public Parsed call() throws Exception {
+							return parse(file);
+						}
+					}));
+				}
+				for(Future<Parsed> future : futures) {
+					try {
+						future.get();
+					} catch(ExecutionException e) {
+						if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+						throw e;
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		for(File file : files) {
+			results.add(parse(file));
+		}
+		return results;
+	}
+
+	private Parsed parse(File file) throws IOException {
+		Parsed p = parsed.get(file);
+		if (p != null && p.isCurrent(file)) {
+			return p;
+		}
+		if (!file.isFile()) {
+			throw new IOException("Definition file not found: " + file);
+		}
+
+		long lastModified = file.lastModified();
+		long length = file.length();
+		Reader in = null;
+		try {
+			in = new TabExpandingReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")));
+			Map<String, Object> node = ProjectConfig.toMap(Yaml.load(in));
+			p = new Parsed(lastModified, length, (node == null)?new LinkedHashMap<String, Object>():node);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		parsed.put(file, p);
+		return p;
+	}
+
+	private static Object getIncludes(Map<String, Object> root) {
+		Map<String, Object> config = ProjectConfig.toMap(root.get("config"));
+		Object includes = (config == null)?null:config.get("includes");
+		return (includes instanceof String)?Collections.singletonList(includes):includes;
+	}
+
+	private static void merge(Map<String, Object> into, Map<String, Object> from) {
+		for(Map.Entry<String, Object> entry : from.entrySet()) {
+			Map<String, Object> existing = ProjectConfig.toMap(into.get(entry.getKey()));
+			Map<String, Object> value = ProjectConfig.toMap(entry.getValue());
+			if (existing != null && value != null) {
+				merge(existing, value);
+				into.put(entry.getKey(), existing);
+			} else if (value != null) {
+				into.put(entry.getKey(), value);
+			} else {
+				into.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static class Parsed {
+		private final long lastModified;
+		private final long length;
+		private final Map<String, Object> node;
+
+		private Parsed(long lastModified, long length, Map<String, Object> node) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.node = node;
+		}
+
+		private boolean isCurrent(File file) {
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+
+	/** YAML doesn't allow tabs for indentation, they are read as four spaces. */
+	private static class TabExpandingReader extends FilterReader {
+		private int spaces = 0;
+		private char[] scratch = new char[0];
+
+		private TabExpandingReader(Reader in) {
+			super(in);
+		}
+
+		public int read() throws IOException {
+			if (spaces > 0) {
+				spaces--;
+				return ' ';
+			}
+			int c = super.read();
+			if (c == '\t') {
+				spaces = 3;
+				return ' ';
+			}
+			return c;
+		}
+
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int count = 0;
+			while(count < length && spaces > 0) {
+				buffer[offset + count++] = ' ';
+				spaces--;
+			}
+			if (count == length) return count;
+
+			// a tab takes four characters, read no more than fits once expanded
+			int want = Math.max(1, (length - count) / 4);
+			if (scratch.length < want) {
+				scratch = new char[want];
+			}
+			int read = super.read(scratch, 0, want);
+			if (read < 0) return (count == 0)?-1:count;
+
+			for(int i = 0; i < read; i++) {
+				if (scratch[i] == '\t') {
+					spaces += 4;
+					while(count < length && spaces > 0) {
+						buffer[offset + count++] = ' ';
+						spaces--;
+					}
+				} else {
+					buffer[offset + count++] = scratch[i];
+				}
+			}
+			return count;
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
\ No newline at end of file
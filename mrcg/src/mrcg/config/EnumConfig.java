@@ -0,0 +1,92 @@
+package mrcg.config;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mrcg.utils.Utils;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An enum's section of the definition file: a map of codes to names, a list of
+ * codes and/or single entry maps, or the class name of an enum that already exists.
+ */
+public class EnumConfig {
+	private final String name;
+	private final Object definition;
+	private final String className;
+	private final boolean preExisting;
+	private final Map<String, String> values;
+	private final int maxCodeLength;
+	private final int maxNameLength;
+
+	public EnumConfig(String name, Object definition) {
+		this.name = name;
+		this.definition = definition;
+		this.className = (definition instanceof String)?definition.toString():null;
+
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		int maxCodeLength = 0;
+		int maxNameLength = 0;
+		Map<String, Object> map = ProjectConfig.toMap(definition);
+		if (map != null) {
+			preExisting = ProjectConfig.toBoolean(map.get("preexisting"), false);
+			for(Map.Entry<String, Object> entry : map.entrySet()) {
+				if ("preexisting".equals(entry.getKey())) continue;
+				maxCodeLength = Math.max(maxCodeLength, entry.getKey().length());
+				maxNameLength = Math.max(maxNameLength, entry.getValue().toString().length());
+				values.put(entry.getKey(), entry.getValue().toString());
+			}
+		} else {
+			preExisting = false;
+			if (definition instanceof List) {
+				for(Object value : (List<?>)definition) {
+					if (value instanceof String) {
+						if ("preexisting".equals(value.toString())) continue;
+						// the name column is sized by the code, as it always has been
+						maxCodeLength = Math.max(maxCodeLength, value.toString().length());
+						maxNameLength = Math.max(maxNameLength, value.toString().length());
+						values.put(value.toString(), Utils.toSpacedCamelCase(StringUtils.capitalize(value.toString())));
+					} else if (value instanceof Map) {
+						for(Map.Entry<String, Object> entry : ProjectConfig.toMap(value).entrySet()) {
+							if ("preexisting".equals(entry.getKey())) continue;
+							maxCodeLength = Math.max(maxCodeLength, entry.getKey().length());
+							maxNameLength = Math.max(maxNameLength, entry.getValue().toString().length());
+							values.put(entry.getKey(), entry.getValue().toString());
+						}
+					}
+				}
+			}
+		}
+		this.values = Collections.unmodifiableMap(values);
+		this.maxCodeLength = maxCodeLength;
+		this.maxNameLength = maxNameLength;
+	}
+
+	public String getName() {return name;}
+	/** This enum's section as parsed. */
+	public Object getDefinition() {return definition;}
+	/** The class name of an existing enum, null when the enum is generated. */
+	public String getClassName() {return className;}
+	public boolean isPreExisting() {return preExisting;}
+	/** Codes and their names, in definition order. */
+	public Map<String, String> getValues() {return values;}
+	public int getMaxCodeLength() {return maxCodeLength;}
+	public int getMaxNameLength() {return maxNameLength;}
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package mrcg.config;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A field definition such as <code>string(1-50) list unique label "Full Name"</code>:
+ * the type first, then options separated by spaces, quoted options may contain spaces.
+ */
+public class FieldConfig {
+	private final String name;
+	private final String definition;
+	private final List<String> parts;
+	private final Set<String> options;
+
+	public FieldConfig(String name, String definition) {
+		this.name = name;
+		this.definition = definition;
+		this.parts = Collections.unmodifiableList(split(definition));
+		this.options = Collections.unmodifiableSet(new LinkedHashSet<String>(parts));
+	}
+
+	public String getName() {return name;}
+	public String getDefinition() {return definition;}
+
+	/** The type, including its scale, e.g. <code>string(1-50)</code>, or <code>references</code>. */
+	public String getType() {
+		return parts.get(0);
+	}
+
+	public boolean isReference() {
+		return "references".equals(getType());
+	}
+
+	/** The referenced bean or enum when this is a reference. */
+	public String getReferencedType() {
+		return parts.get(1);
+	}
+
+	public boolean has(String option) {
+		return options.contains(option);
+	}
+
+	/** @return the option following <code>option</code>, e.g. a label's text */
+	public String getOptionAfter(String option) {
+		if (options.contains(option)) {
+			for(Iterator<String> iterator = options.iterator(); iterator.hasNext();) {
+				if (iterator.next().equals(option)) {
+					return iterator.hasNext()?iterator.next():null;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static List<String> split(String def) {
+		List<String> list = new ArrayList<String>();
+		StringBuilder b = new StringBuilder();
+		boolean insideQuotes = false;
+		for(char c : def.toCharArray()) {
+			if (c == ' ' && !insideQuotes) {
+				String s = b.toString().trim();
+				if (s.length() > 0) {list.add(s);}
+				b.setLength(0);
+			} else if (c == '"') {
+				String s = b.toString().trim();
+				if (s.length() > 0) {list.add(s);}
+				b.setLength(0);
+				insideQuotes = !insideQuotes;
+			} else {
+				b.append(c);
+			}
+		}
+
+		String s = b.toString().trim();
+		if (s.length() > 0) {list.add(s);}
+
+		return list;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+package mrcg.config;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The definition file, read once.  The <code>beans</code> and <code>enums</code>
+ * sections become {@link BeanConfig}s and {@link EnumConfig}s, everything else is
+ * flattened into dotted paths such as <code>config.basepackage</code> so any value
+ * is a single lookup away.
+ */
+public class ProjectConfig {
+	private final Map<String, Object> shared;
+	private final Map<String, Object> values;
+	private final Map<String, BeanConfig> beans = new LinkedHashMap<String, BeanConfig>();
+	private final Map<String, EnumConfig> enums = new LinkedHashMap<String, EnumConfig>();
+
+	private final boolean skipGui;
+	private final boolean skipDatabase;
+	private final boolean reverseReference;
+	private final boolean copyResources;
+	private final boolean incremental;
+	private final boolean dryRun;
+	private final boolean fsync;
+	private final boolean telemetry;
+	private final boolean rowMappers;
+	private final int threads;
+
+	public ProjectConfig(Map<String, Object> root) {
+		Map<String, Object> shared = new LinkedHashMap<String, Object>(root);
+		Map<String, Object> beans = toMap(shared.remove("beans"));
+		Map<String, Object> enums = toMap(shared.remove("enums"));
+		this.shared = Collections.unmodifiableMap(shared);
+		this.values = Collections.unmodifiableMap(flatten(shared));
+
+		if (enums != null) {
+			for(Map.Entry<String, Object> entry : enums.entrySet()) {
+				this.enums.put(entry.getKey(), new EnumConfig(entry.getKey(), entry.getValue()));
+			}
+		}
+		if (beans != null) {
+			for(Map.Entry<String, Object> entry : beans.entrySet()) {
+				this.beans.put(entry.getKey(), new BeanConfig(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		skipGui = getBoolean("config.skipgui", false);
+		skipDatabase = getBoolean("config.skipdatabase", false);
+		reverseReference = getBoolean("config.reversereference", true);
+		copyResources = getBoolean("config.copyresources", true);
+		incremental = getBoolean("config.incremental", true);
+		dryRun = getBoolean("config.dryrun", false);
+		fsync = getBoolean("config.fsync", false);
+		telemetry = getBoolean("config.telemetry", true);
+		rowMappers = getBoolean("config.rowmappers", true);
+		threads = getInteger("config.threads", Runtime.getRuntime().availableProcessors());
+	}
+
+	public String getString(String path) {
+		return toString(values.get(path));
+	}
+
+	public boolean getBoolean(String path, boolean defaultValue) {
+		return toBoolean(values.get(path), defaultValue);
+	}
+
+	public int getInteger(String path, int defaultValue) {
+		String value = getString(path);
+		return StringUtils.isEmpty(value)?defaultValue:Integer.parseInt(value);
+	}
+
+	/** Everything but the beans and enums, as parsed. */
+	public Map<String, Object> getSharedDefinition() {
+		return shared;
+	}
+
+	public Collection<BeanConfig> getBeans() {
+		return Collections.unmodifiableCollection(beans.values());
+	}
+
+	public BeanConfig getBean(String name) {
+		return beans.get(name);
+	}
+
+	public Collection<EnumConfig> getEnums() {
+		return Collections.unmodifiableCollection(enums.values());
+	}
+
+	public EnumConfig getEnum(String name) {
+		return enums.get(name);
+	}
+
+	/** @return the configured project path, the working directory if there is none */
+	public String getProjectPath() {
+		String projectPath = getString("config.projectpath");
+		return StringUtils.isEmpty(projectPath)?System.getProperty("user.dir") + "/":projectPath;
+	}
+
+	public String getProjectName() {return getString("config.projectname");}
+	public String getBasePackage() {return getString("config.basepackage");}
+	public String getLibraryPackage() {return getString("config.libraryPackage");}
+	public String getLogicsPackage() {return getString("config.logicsPackage");}
+	public String getLogicFacade() {return getString("config.logicFacade");}
+	public String getDigester() {return getString("config.digester");}
+	public String getTagLibPrefix() {return getString("config.tagLibPrefix");}
+	public String getTagUtils() {return getString("config.tagUtils");}
+	public String getTransactionFilter() {return getString("config.transactionFilter");}
+	public String getExceptionHandler() {return getString("config.exceptionHandler");}
+	public String getTableNameClass() {return getString("config.tableNameClass");}
+	/** A class with a static <code>getConnection()</code> handing out the connection of the current transaction. */
+	public String getConnectionProvider() {return getString("config.connectionProvider");}
+	public String getBeanInterface() {return getString("config.beanInterface");}
+	public String getPropertiesFile() {return getString("config.propertiesfile");}
+	public String getOutputArchive() {return getString("config.outputarchive");}
+	public String getDatabaseName() {return getString("database.name");}
+	public String getDatabaseType() {return getString("database.type");}
+	/** The JDBC url design mode applies the script through, runall.sh is run if there is none.  {database} is replaced by the database a script connects to. */
+	public String getDatabaseUrl() {return getString("database.url");}
+	/** The database the statements before a script's first \c run in, needed when database.url has {database} in it. */
+	public String getDatabaseBootstrap() {return getString("database.bootstrap");}
+	public String getDatabaseUser() {return getString("database.user");}
+	public String getDatabasePassword() {return getString("database.password");}
+	/** Seconds each statement may take, 0 for no limit. */
+	public int getDatabaseTimeout() {return getInteger("database.timeout", 0);}
+	public int getDatabaseBatchSize() {return getInteger("database.batchsize", 100);}
+
+	public boolean isDesignMode() {return "design".equals(getString("config.mode"));}
+	public boolean isDesignAlwaysMode() {return "design-always".equals(getString("config.mode"));}
+	public boolean isSkipGui() {return skipGui;}
+	public boolean isSkipDatabase() {return skipDatabase;}
+	public boolean isReverseReference() {return reverseReference;}
+	public boolean isCopyResources() {return copyResources;}
+	public boolean isIncremental() {return incremental;}
+	public boolean isDryRun() {return dryRun;}
+	public boolean isFsync() {return fsync;}
+	/** Whether .mrcg/telemetry.json and .csv are written after each run. */
+	public boolean isTelemetry() {return telemetry;}
+	/** Whether a Generated&lt;Bean&gt;Mapper reading each bean over JDBC is generated. */
+	public boolean isRowMappers() {return rowMappers;}
+	public int getThreads() {return threads;}
+
+	/** Flattens nested maps into dotted paths, lists and scalars are kept as they are. */
+	static Map<String, Object> flatten(Map<String, Object> node) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		flatten("", node, values);
+		return values;
+	}
+
+	private static void flatten(String prefix, Map<String, Object> node, Map<String, Object> values) {
+		for(Map.Entry<String, Object> entry : node.entrySet()) {
+			String path = prefix + entry.getKey();
+			if (entry.getValue() instanceof Map) {
+				flatten(path + ".", toMap(entry.getValue()), values);
+			} else {
+				values.put(path, entry.getValue());
+			}
+		}
+	}
+
+	/** Copies a parsed map, stringifying its keys and keeping its order. */
+	static Map<String, Object> toMap(Object value) {
+		if (!(value instanceof Map)) return null;
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		for(Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+			map.put(String.valueOf(entry.getKey()), entry.getValue());
+		}
+		return map;
+	}
+
+	static List<String> toStrings(Object value) {
+		List<String> list = new ArrayList<String>();
+		if (value instanceof List) {
+			for(Object o : (List<?>)value) {
+				list.add(StringUtils.trimToEmpty(String.valueOf(o)));
+			}
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	static String toString(Object value) {
+		return (value == null)?null:value.toString();
+	}
+
+	static boolean toBoolean(Object value, boolean defaultValue) {
+		String s = toString(value);
+		return StringUtils.isEmpty(s)?defaultValue:Boolean.valueOf(s);
+	}
+}
\ No newline at end of file
@@ -27,6 +27,24 @@ public abstract class AbstractDBScripter  implements DBScripter {
 	protected abstract void start(StringBuilder b, String name);
 	protected abstract void end(StringBuilder b);
 	protected abstract String getType(JavaField f);
+	/** Starts a migration of the existing database <code>name</code>. */
+	protected abstract void startMigration(StringBuilder b, String name);
+	
+	protected void endMigration(StringBuilder b) {
+		end(b);
+	}
+	
+	public String getArrayType(JavaField f) {
+		return null;
+	}
+
+	protected String dropIndex(String table, String index) {
+		return "DROP INDEX " + index + ";\n";
+	}
+	
+	protected String dropTable(String table) {
+		return "DROP TABLE " + table + ";\n";
+	}
 	
 	public String getColumnDelimiter() {
 		return "";
@@ -42,27 +60,8 @@ public abstract class AbstractDBScripter  implements DBScripter {
 
 		// Tables
 		for(JavaClass jc : types.values()) {
-			if (jc.isEnum() && !jc.isPreExisting()) {
-				JavaEnum je = (JavaEnum)jc;
-				b.append("\n");
-				b.append("CREATE TABLE " + jc.getTableName() + " (\n");
-				b.append("    code VARCHAR(" + je.getMaxCodeLength() + ") NOT NULL,\n");
-				b.append("    name VARCHAR(" + je.getField("name").getMaxLength() + ") NOT NULL,\n");
-				b.append("    PRIMARY KEY (code)\n");				
-				b.append(");\n");
-			} else {
-				b.append("\n");
-				b.append("CREATE TABLE " + jc.getTableName() + " (\n");
-				for(JavaField jf : jc.getInstanceFields()) {
-					if (!jf.isDatabaseField()) continue;
-					b.append("    " + getColumnDelimiter() + Utils.toDatabaseFormat(jf.getName()) +
-							getColumnDelimiter() + " " + getType(jf) + " " +
-						(jf.isRequired()?"not null":"null") + 
-					",\n");
-				}
-				b.append("    PRIMARY KEY (id)\n");
-				b.append(getTableClosing());
-			}
+			b.append("\n");
+			b.append(createTable(jc));
 		}
 		
 		
@@ -73,13 +72,8 @@ public abstract class AbstractDBScripter  implements DBScripter {
 			StringBuilder ab = new StringBuilder();
 			for(JavaField jf : jc.getInstanceFields()) {
 				if (jf.getReferences() != null) {
-					if (jf.getReferences().isEnum()) {
-						ab.append("    ADD FOREIGN KEY (" + Utils.toDatabaseFormat(jf.getName()) + 
-							") REFERENCES " + jf.getReferences().getTableName() + " (code),\n");
-					} else {
-						ab.append("    ADD FOREIGN KEY (" + Utils.toDatabaseFormat(jf.getName()) + 
-							") REFERENCES " + jf.getReferences().getTableName() + " (id),\n");
-					}
+					ab.append("    ADD FOREIGN KEY (" + Utils.toDatabaseFormat(jf.getName()) + 
+						") REFERENCES " + getReference(jf) + ",\n");
 				}
 			}
 			if (ab.length() > 0) {
@@ -96,11 +90,7 @@ public abstract class AbstractDBScripter  implements DBScripter {
 		for(JavaClass jc : types.values()) {
 			for(JavaField jf : jc.getInstanceFields()) {
 				if (jf.isUnique()) {
-					String column = Utils.toDatabaseFormat(jf.getName());
-					b.append(
-						"CREATE UNIQUE INDEX " + jc.getTableName() + "_" + column + 
-						"_unique_index ON " + jc.getTableName() + " (" + column + ");\n\n"
-					);
+					b.append(createIndex(true, jc.getTableName(), uniqueIndexName(jc, jf), Utils.toDatabaseFormat(jf.getName()))).append("\n\n");
 				}
 			}
 		}
@@ -111,11 +101,7 @@ public abstract class AbstractDBScripter  implements DBScripter {
 		for(JavaClass jc : types.values()) {
 			for(JavaField jf : jc.getInstanceFields()) {
 				if (jf.isIndexed()) {
-					String column = Utils.toDatabaseFormat(jf.getName());
-					b.append(
-						"CREATE INDEX " + jc.getTableName() + "_" + column + 
-						"_index ON " + jc.getTableName() + " (" + column + ");\n\n"
-					);
+					b.append(createIndex(false, jc.getTableName(), indexName(jc, jf), Utils.toDatabaseFormat(jf.getName()))).append("\n\n");
 				}
 			}
 		}
@@ -123,10 +109,7 @@ public abstract class AbstractDBScripter  implements DBScripter {
 		// User Defined Compound Indexes		
 		for(JavaClass jc : types.values()) {
 			for(Index index : jc.getIndexes()) {
-				b.append(
-					"CREATE INDEX " + jc.getTableName() + "_" + index.getName() + 
-					"_index ON " + jc.getTableName() + " (" + index.getColumnList() + ");\n\n"
-				);
+				b.append(createIndex(false, jc.getTableName(), indexName(jc, index), index.getColumnList())).append("\n\n");
 			}
 		}
 
@@ -138,7 +121,7 @@ public abstract class AbstractDBScripter  implements DBScripter {
 		for(JavaClass jc : types.values()) {
 			if (jc.isEnum()) {
 				for(JavaEnumValue jev : ((JavaEnum)jc).getValues()) {
-					b.append("INSERT INTO " + jc.getTableName() + " (code, name) VALUES ('" + jev.getName() + "', '" + jev.getValue() + "');\n");
+					b.append(insertRow(jc.getTableName(), jev.getName(), jev.getValue()));
 				}
 				b.append("\n");
 			}
@@ -147,5 +130,194 @@ public abstract class AbstractDBScripter  implements DBScripter {
 		end(b);
 		return b.toString();
 	}
+
+	public SchemaSnapshot snapshot(Map<String, JavaClass> types) {
+		SchemaSnapshot snapshot = new SchemaSnapshot();
+		for(JavaClass jc : types.values()) {
+			SchemaSnapshot.Table table = snapshot.addTable(jc.getTableName(), createTable(jc));
+			if (isEnumTable(jc)) {
+				table.getColumns().put("code", "VARCHAR(" + ((JavaEnum)jc).getMaxCodeLength() + ") NOT NULL");
+				table.getColumns().put("name", "VARCHAR(" + jc.getField("name").getMaxLength() + ") NOT NULL");
+			} else {
+				for(JavaField jf : jc.getInstanceFields()) {
+					if (jf.isDatabaseField()) {
+						table.getColumns().put(Utils.toDatabaseFormat(jf.getName()), getColumnDefinition(jf));
+					}
+				}
+			}
+			for(JavaField jf : jc.getInstanceFields()) {
+				String column = Utils.toDatabaseFormat(jf.getName());
+				if (jf.getReferences() != null) {
+					table.getForeignKeys().put(column, getReference(jf));
+				}
+				if (jf.isUnique()) {
+					table.getIndexes().put(uniqueIndexName(jc, jf), createIndex(true, jc.getTableName(), uniqueIndexName(jc, jf), column));
+				}
+				if (jf.isIndexed()) {
+					table.getIndexes().put(indexName(jc, jf), createIndex(false, jc.getTableName(), indexName(jc, jf), column));
+				}
+			}
+			for(Index index : jc.getIndexes()) {
+				table.getIndexes().put(indexName(jc, index), createIndex(false, jc.getTableName(), indexName(jc, index), index.getColumnList()));
+			}
+			if (jc.isEnum()) {
+				for(JavaEnumValue jev : ((JavaEnum)jc).getValues()) {
+					table.getRows().put(jev.getName(), jev.getValue());
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	public String buildMigration(String name, SchemaSnapshot previous, SchemaSnapshot current) {
+		if (!isCompatible(previous, current)) return null;
+
+		StringBuilder b = new StringBuilder();
+		startMigration(b, name);
+		String d = getColumnDelimiter();
+
+		// New tables and columns
+		for(SchemaSnapshot.Table now : current.getTables()) {
+			SchemaSnapshot.Table was = previous.getTable(now.getName());
+			if (was == null) {
+				b.append("\n").append(now.getCreate());
+				continue;
+			}
+			for(Map.Entry<String, String> column : now.getColumns().entrySet()) {
+				if (!was.getColumns().containsKey(column.getKey())) {
+					b.append("ALTER TABLE " + now.getName() + " ADD COLUMN " + d + column.getKey() + d + " " + column.getValue() + ";\n");
+				}
+			}
+		}
+
+		// Dropped indexes, columns and tables
+		for(SchemaSnapshot.Table was : previous.getTables()) {
+			SchemaSnapshot.Table now = current.getTable(was.getName());
+			if (now == null) {
+				b.append(dropTable(was.getName()));
+				continue;
+			}
+			for(Map.Entry<String, String> index : was.getIndexes().entrySet()) {
+				if (!index.getValue().equals(now.getIndexes().get(index.getKey()))) {
+					b.append(dropIndex(was.getName(), index.getKey()));
+				}
+			}
+			for(String column : was.getColumns().keySet()) {
+				if (!now.getColumns().containsKey(column)) {
+					b.append("ALTER TABLE " + was.getName() + " DROP COLUMN " + d + column + d + ";\n");
+				}
+			}
+		}
+
+		// New foreign keys, indexes and enum rows
+		for(SchemaSnapshot.Table now : current.getTables()) {
+			SchemaSnapshot.Table was = previous.getTable(now.getName());
+			for(Map.Entry<String, String> foreignKey : now.getForeignKeys().entrySet()) {
+				if (was == null || !was.getForeignKeys().containsKey(foreignKey.getKey())) {
+					b.append("ALTER TABLE " + now.getName() + " ADD FOREIGN KEY (" + foreignKey.getKey() + ") REFERENCES " + foreignKey.getValue() + ";\n");
+				}
+			}
+			for(Map.Entry<String, String> index : now.getIndexes().entrySet()) {
+				if (was == null || !index.getValue().equals(was.getIndexes().get(index.getKey()))) {
+					b.append(index.getValue()).append("\n");
+				}
+			}
+			for(Map.Entry<String, String> row : now.getRows().entrySet()) {
+				String previousName = (was == null)?null:was.getRows().get(row.getKey());
+				if (previousName == null) {
+					b.append(insertRow(now.getName(), row.getKey(), row.getValue()));
+				} else if (!previousName.equals(row.getValue())) {
+					b.append("UPDATE " + now.getName() + " SET name = '" + row.getValue() + "' WHERE code = '" + row.getKey() + "';\n");
+				}
+			}
+			if (was != null) {
+				for(String code : was.getRows().keySet()) {
+					if (!now.getRows().containsKey(code)) {
+						b.append("DELETE FROM " + now.getName() + " WHERE code = '" + code + "';\n");
+					}
+				}
+			}
+		}
+
+		endMigration(b);
+		return b.toString();
+	}
+
+	/**
+	 * A change is compatible when existing columns and foreign keys are kept as they
+	 * were, and columns added to existing tables may be null.
+	 */
+	private boolean isCompatible(SchemaSnapshot previous, SchemaSnapshot current) {
+		for(SchemaSnapshot.Table was : previous.getTables()) {
+			SchemaSnapshot.Table now = current.getTable(was.getName());
+			if (now == null) continue;
+			for(Map.Entry<String, String> column : was.getColumns().entrySet()) {
+				String definition = now.getColumns().get(column.getKey());
+				if (definition != null && !definition.equals(column.getValue())) return false;
+			}
+			for(Map.Entry<String, String> foreignKey : was.getForeignKeys().entrySet()) {
+				if (!foreignKey.getValue().equals(now.getForeignKeys().get(foreignKey.getKey()))) return false;
+			}
+			for(Map.Entry<String, String> column : now.getColumns().entrySet()) {
+				if (!was.getColumns().containsKey(column.getKey()) && column.getValue().toLowerCase().endsWith("not null")) return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isEnumTable(JavaClass jc) {
+		return jc.isEnum() && !jc.isPreExisting();
+	}
+
+	private String createTable(JavaClass jc) {
+		StringBuilder b = new StringBuilder();
+		if (isEnumTable(jc)) {
+			JavaEnum je = (JavaEnum)jc;
+			b.append("CREATE TABLE " + jc.getTableName() + " (\n");
+			b.append("    code VARCHAR(" + je.getMaxCodeLength() + ") NOT NULL,\n");
+			b.append("    name VARCHAR(" + je.getField("name").getMaxLength() + ") NOT NULL,\n");
+			b.append("    PRIMARY KEY (code)\n");				
+			b.append(");\n");
+		} else {
+			b.append("CREATE TABLE " + jc.getTableName() + " (\n");
+			for(JavaField jf : jc.getInstanceFields()) {
+				if (!jf.isDatabaseField()) continue;
+				b.append("    " + getColumnDelimiter() + Utils.toDatabaseFormat(jf.getName()) +
+						getColumnDelimiter() + " " + getColumnDefinition(jf) + 
+				",\n");
+			}
+			b.append("    PRIMARY KEY (id)\n");
+			b.append(getTableClosing());
+		}
+		return b.toString();
+	}
+
+	private String getColumnDefinition(JavaField jf) {
+		return getType(jf) + " " + (jf.isRequired()?"not null":"null");
+	}
+
+	private String getReference(JavaField jf) {
+		return jf.getReferences().getTableName() + (jf.getReferences().isEnum()?" (code)":" (id)");
+	}
+
+	private String uniqueIndexName(JavaClass jc, JavaField jf) {
+		return jc.getTableName() + "_" + Utils.toDatabaseFormat(jf.getName()) + "_unique_index";
+	}
+
+	private String indexName(JavaClass jc, JavaField jf) {
+		return jc.getTableName() + "_" + Utils.toDatabaseFormat(jf.getName()) + "_index";
+	}
+
+	private String indexName(JavaClass jc, Index index) {
+		return jc.getTableName() + "_" + index.getName() + "_index";
+	}
+
+	private String createIndex(boolean unique, String table, String name, String columns) {
+		return "CREATE " + (unique?"UNIQUE ":"") + "INDEX " + name + " ON " + table + " (" + columns + ");";
+	}
+
+	private String insertRow(String table, String code, String name) {
+		return "INSERT INTO " + table + " (code, name) VALUES ('" + code + "', '" + name + "');\n";
+	}
 	
 }
\ No newline at end of file
@@ -17,7 +17,22 @@ package mrcg.db;
 import java.util.Map;
 
 import mrcg.domain.JavaClass;
+import mrcg.domain.JavaField;
 
 public interface DBScripter {
 	public String buildScript(String name, Map<String, JavaClass> types);
+	/** @return the schema {@link #buildScript} creates for <code>types</code> */
+	public SchemaSnapshot snapshot(Map<String, JavaClass> types);
+	/**
+	 * @return a script taking the database <code>name</code>, built from <code>previous</code>,
+	 * to <code>current</code> while keeping its data, null if the change isn't compatible
+	 */
+	public String buildMigration(String name, SchemaSnapshot previous, SchemaSnapshot current);
+	/**
+	 * @return the element type of the array bulk statements bind the values of <code>f</code>
+	 * as, null if the database has no arrays or can't bind these
+	 */
+	public String getArrayType(JavaField f);
+	/** @return what the script quotes column names with, so reserved words can be columns */
+	public String getColumnDelimiter();
 }
\ No newline at end of file
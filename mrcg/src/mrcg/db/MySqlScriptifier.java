@@ -34,6 +34,16 @@ public class MySqlScriptifier extends AbstractDBScripter {
 		b.append("START TRANSACTION;\n");
 	}
 	
+	protected void startMigration(StringBuilder b, String name) {
+		b.append("USE " + name + ";\n");
+		b.append("SET FOREIGN_KEY_CHECKS = 0;\n");
+		b.append("START TRANSACTION;\n");
+	}
+	
+	protected String dropIndex(String table, String index) {
+		return "DROP INDEX " + index + " ON " + table + ";\n";
+	}
+	
 	protected void end(StringBuilder b) {
 		b.append("SET FOREIGN_KEY_CHECKS = 1;\n");
 		b.append("COMMIT;\n");		
@@ -25,10 +25,39 @@ public class PostgreSqlScriptifier extends AbstractDBScripter {
 		b.append("START TRANSACTION;\n");
 	}
 	
+	protected void startMigration(StringBuilder b, String name) {
+		b.append("\\c " + name + ";\n");
+		b.append("START TRANSACTION;\n");
+	}
+	
+	protected String dropTable(String table) {
+		return "DROP TABLE " + table + " CASCADE;\n";
+	}
+	
 	protected void end(StringBuilder b) {
 		b.append("COMMIT;\n");		
 	}
 	
+	/** The driver's names for the element types, the values are sent as text. */
+	public String getArrayType(JavaField f) {
+		if (f.getName().equals("id")) {
+			return "int8";
+		}
+		switch(f.getDbType()) {
+			case Boolean:			return "bool";
+			case Date:				return "timestamp";
+			case JustDate:			return "date";
+			case Time:				return "time";
+			case Double:			return "numeric";
+			case DoublePrecision:	return "float8";
+			case Integer:			return "int4";
+			case Long:				return "int8";
+			case Text:				return "text";
+			case Varchar:			return "varchar";
+			default:				return null;
+		}
+	}
+
 	protected String getType(JavaField f) {
 		if (f.getName().equals("id")) {
 			return "bigserial";
@@ -0,0 +1,245 @@
+package mrcg.db;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a script built by a {@link DBScripter} over JDBC.  Consecutive INSERTs are
+ * sent in batches; everything else one statement at a time.  <code>\c database</code>
+ * lines reconnect to that database and START TRANSACTION and COMMIT are carried out
+ * on the connection, so the same script works here and through psql or mysql.
+ * <p>
+ * Statements before the first <code>\c</code> run in the bootstrap database, which
+ * must be set when the url has <code>{database}</code> in it, e.g. postgres or mysql.
+ */
+public class SchemaApplier {
+	private static final String DATABASE = "{database}";
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private int timeout;
+	private int batchSize = 100;
+	private String bootstrapDatabase;
+	private Listener listener;
+
+	private Connection connection;
+
+	/** @param url a JDBC url, <code>{database}</code> in it is replaced by the database <code>\c</code> connects to */
+	public SchemaApplier(String url, String user, String password) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+	}
+
+	/** Seconds each statement may take, 0 for no limit. */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/** The database statements before the first <code>\c</code> run in. */
+	public void setBootstrapDatabase(String bootstrapDatabase) {
+		this.bootstrapDatabase = bootstrapDatabase;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/** @return how many statements were executed */
+	public int apply(String script) throws SQLException {
+		List<String> statements = split(script);
+		try {
+			List<String> batch = new ArrayList<String>();
+			for(int i = 0; i < statements.size(); i++) {
+				String sql = statements.get(i);
+				if (isInsert(sql)) {
+					batch.add(sql);
+					if (batch.size() < batchSize && i + 1 < statements.size() && isInsert(statements.get(i + 1))) continue;
+					executeBatch(batch, i + 1, statements.size());
+					batch.clear();
+				} else {
+					execute(sql, i + 1, statements.size());
+				}
+			}
+			if (connection != null && !connection.getAutoCommit()) {
+				connection.commit();
+			}
+			return statements.size();
+		} catch(SQLException e) {
+			rollback();
+			throw e;
+		} finally {
+			close();
+		}
+	}
+
+	private void execute(String sql, int done, int total) throws SQLException {
+		long start = System.nanoTime();
+		String upper = sql.toUpperCase();
+		if (sql.startsWith("\\c ")) {
+			if (connection != null && !connection.getAutoCommit()) {
+				throw new SQLException("[" + sql + "] with a transaction open, it has to be committed first");
+			}
+			connect(sql.substring(3).trim());
+		} else if (upper.equals("START TRANSACTION") || upper.equals("BEGIN")) {
+			connection().setAutoCommit(false);
+		} else if (upper.equals("COMMIT")) {
+			if (!connection().getAutoCommit()) {
+				connection.commit();
+				connection.setAutoCommit(true);
+			}
+		} else {
+			Statement statement = connection().createStatement();
+			try {
+				statement.setQueryTimeout(timeout);
+				statement.execute(sql);
+			} catch(SQLException e) {
+				throw new SQLException(e.getMessage() + " in [" + sql + "]", e.getSQLState(), e.getErrorCode(), e);
+			} finally {
+				statement.close();
+			}
+		}
+		executed(sql, done, total, start);
+	}
+
+	private void executeBatch(List<String> batch, int done, int total) throws SQLException {
+		long start = System.nanoTime();
+		Statement statement = connection().createStatement();
+		try {
+			statement.setQueryTimeout(timeout);
+			for(String sql : batch) {
+				statement.addBatch(sql);
+			}
+			statement.executeBatch();
+		} catch(SQLException e) {
+			throw new SQLException(e.getMessage() + " in a batch starting [" + batch.get(0) + "]", e.getSQLState(), e.getErrorCode(), e);
+		} finally {
+			statement.close();
+		}
+		executed(batch.size() == 1?batch.get(0):batch.size() + " inserts", done, total, start);
+	}
+
+	private void executed(String sql, int done, int total, long start) {
+		if (listener != null) {
+			listener.executed(sql, done, total, (System.nanoTime() - start) / 1000000);
+		}
+	}
+
+	private Connection connection() throws SQLException {
+		if (connection == null) {
+			if (bootstrapDatabase == null && url.contains(DATABASE)) {
+				throw new SQLException("No bootstrap database to run statements before the first \\c in, the url names none");
+			}
+			connect(bootstrapDatabase);
+		}
+		return connection;
+	}
+
+	private void connect(String database) throws SQLException {
+		close();
+		connection = DriverManager.getConnection((database == null)?url:url.replace(DATABASE, database), user, password);
+	}
+
+	private void rollback() {
+		try {
+			if (connection != null && !connection.getAutoCommit()) {
+				connection.rollback();
+			}
+		} catch(SQLException e) {
+			// the original failure is the one worth reporting
+		}
+	}
+
+	private void close() {
+		try {
+			if (connection != null) {
+				connection.close();
+			}
+		} catch(SQLException e) {
+			// nothing left to do with it
+		} finally {
+			connection = null;
+		}
+	}
+
+	private static boolean isInsert(String sql) {
+		return sql.regionMatches(true, 0, "INSERT ", 0, 7);
+	}
+
+	/**
+	 * Splits a script into statements, on semicolons outside of quotes.  Comments
+	 * are dropped and a line starting with a backslash is a statement of its own.
+	 */
+	public static List<String> split(String script) {
+		List<String> statements = new ArrayList<String>();
+		StringBuilder b = new StringBuilder();
+		char quote = 0;
+		for(int i = 0; i < script.length(); i++) {
+			char c = script.charAt(i);
+			if (quote != 0) {
+				b.append(c);
+				if (c == quote) quote = 0;
+			} else if (c == '\'' || c == '"' || c == '`') {
+				b.append(c);
+				quote = c;
+			} else if (c == '-' && script.startsWith("--", i)) {
+				i = lineEnd(script, i) - 1;
+			} else if (c == '\\' && b.toString().trim().isEmpty()) {
+				int end = lineEnd(script, i);
+				add(statements, script.substring(i, end));
+				b.setLength(0);
+				i = end - 1;
+			} else if (c == ';') {
+				add(statements, b.toString());
+				b.setLength(0);
+			} else {
+				b.append(c);
+			}
+		}
+		add(statements, b.toString());
+		return statements;
+	}
+
+	private static int lineEnd(String script, int from) {
+		int end = script.indexOf('\n', from);
+		return (end == -1)?script.length():end;
+	}
+
+	private static void add(List<String> statements, String sql) {
+		sql = sql.trim();
+		while(sql.endsWith(";")) {
+			sql = sql.substring(0, sql.length() - 1).trim();
+		}
+		if (!sql.isEmpty()) {
+			statements.add(sql);
+		}
+	}
+
+	public interface Listener {
+		/** @param sql what was executed, or a summary of a batch; @param done statements executed so far out of <code>total</code> */
+		public void executed(String sql, int done, int total, long millis);
+	}
+}
\ No newline at end of file
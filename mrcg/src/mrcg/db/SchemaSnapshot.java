@@ -0,0 +1,141 @@
+package mrcg.db;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The tables, columns, foreign keys, indexes and enum rows a database script
+ * creates, as built by {@link DBScripter#snapshot}.  The snapshot of the schema the
+ * database was last built from is kept so the next change can be applied as a
+ * migration.  Each line of the snapshot file is a kind of entry and its tab
+ * separated values, entries after a table line belong to that table.
+ */
+public class SchemaSnapshot {
+	private static final String VERSION = "mrcg-schema 1";
+
+	private final Map<String, Table> tables = new LinkedHashMap<String, Table>();
+
+	public Table addTable(String name, String create) {
+		Table table = new Table(name, create);
+		tables.put(name, table);
+		return table;
+	}
+
+	public Table getTable(String name) {
+		return tables.get(name);
+	}
+
+	public Collection<Table> getTables() {
+		return tables.values();
+	}
+
+	/** @return the snapshot saved in <code>file</code>, null if there is none or it can't be read */
+	public static SchemaSnapshot load(File file) throws IOException {
+		if (!file.exists()) return null;
+		SchemaSnapshot snapshot = new SchemaSnapshot();
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			if (!VERSION.equals(in.readLine())) return null;
+			Table table = null;
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] values = line.split("\t", 3);
+				if (values[0].equals("table")) {
+					table = snapshot.addTable(values[1], null);
+				} else if (table == null || values.length < 3) {
+					return null;
+				} else if (values[0].equals("column")) {
+					table.columns.put(values[1], values[2]);
+				} else if (values[0].equals("foreignkey")) {
+					table.foreignKeys.put(values[1], values[2]);
+				} else if (values[0].equals("index")) {
+					table.indexes.put(values[1], values[2]);
+				} else if (values[0].equals("row")) {
+					table.rows.put(values[1], values[2]);
+				}
+			}
+			return snapshot;
+		} finally {
+			IOUtils.closeQuietly((Reader)in);
+		}
+	}
+
+	public void save(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		Writer out = null;
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			out.write(VERSION);
+			out.write('\n');
+			for(Table table : tables.values()) {
+				out.write("table\t" + table.name + "\n");
+				write(out, "column", table.columns);
+				write(out, "foreignkey", table.foreignKeys);
+				write(out, "index", table.indexes);
+				write(out, "row", table.rows);
+			}
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private static void write(Writer out, String kind, Map<String, String> values) throws IOException {
+		for(Map.Entry<String, String> entry : values.entrySet()) {
+			out.write(kind + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+		}
+	}
+
+	public static class Table {
+		private final String name;
+		private final String create;
+		private final Map<String, String> columns = new LinkedHashMap<String, String>();
+		private final Map<String, String> foreignKeys = new LinkedHashMap<String, String>();
+		private final Map<String, String> indexes = new LinkedHashMap<String, String>();
+		private final Map<String, String> rows = new LinkedHashMap<String, String>();
+
+		private Table(String name, String create) {
+			this.name = name;
+			this.create = create;
+		}
+
+		public String getName() {return name;}
+		/** The CREATE TABLE statement, only known for a snapshot built from the model. */
+		public String getCreate() {return create;}
+		/** Column name to its type and nullability, e.g. <code>varchar(50) not null</code>. */
+		public Map<String, String> getColumns() {return columns;}
+		/** Column name to what it references, e.g. <code>customer (id)</code>. */
+		public Map<String, String> getForeignKeys() {return foreignKeys;}
+		/** Index name to the statement creating it. */
+		public Map<String, String> getIndexes() {return indexes;}
+		/** The code and name of each row an enum's table is filled with. */
+		public Map<String, String> getRows() {return rows;}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+package mrcg.domain;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class's fields.  The filtered views and lookups {@link JavaClass} offers are
+ * built once and kept until the list, or one of its fields, changes.  A field
+ * belongs to one list at a time; it tells the list it was added to when it changes.
+ * Views are immutable snapshots, so they can be read from any number of threads.
+ */
+class FieldList extends AbstractList<JavaField> {
+	private final List<JavaField> fields = new ArrayList<JavaField>();
+	private final AtomicInteger version = new AtomicInteger();
+	private volatile Views views;
+
+	FieldList() {}
+
+	FieldList(Collection<JavaField> fields) {
+		addAll(fields);
+	}
+
+	public JavaField get(int index) {
+		return fields.get(index);
+	}
+
+	public int size() {
+		return fields.size();
+	}
+
+	public JavaField set(int index, JavaField field) {
+		JavaField previous = fields.set(index, field);
+		release(previous);
+		adopt(field);
+		invalidate();
+		return previous;
+	}
+
+	public void add(int index, JavaField field) {
+		fields.add(index, field);
+		adopt(field);
+		modCount++;
+		invalidate();
+	}
+
+	public JavaField remove(int index) {
+		JavaField previous = fields.remove(index);
+		release(previous);
+		modCount++;
+		invalidate();
+		return previous;
+	}
+
+	void invalidate() {
+		version.incrementAndGet();
+	}
+
+	Views views() {
+		int current = version.get();
+		Views views = this.views;
+		if (views == null || views.version != current) {
+			// built from a list that changed meanwhile, the version won't match and it is built again
+			views = new Views(current, new ArrayList<JavaField>(fields));
+			this.views = views;
+		}
+		return views;
+	}
+
+	private void adopt(JavaField field) {
+		if (field != null) {
+			field.setOwner(this);
+		}
+	}
+
+	private void release(JavaField field) {
+		if (field != null && !fields.contains(field)) {
+			field.setOwner(null);
+		}
+	}
+
+	static class Views {
+		private final int version;
+		final List<JavaField> staticFields;
+		final List<JavaField> instanceFields;
+		final List<JavaField> nonAutoHandledInstanceFields;
+		final List<JavaField> listFields;
+		final Map<String, JavaField> byName = new HashMap<String, JavaField>();
+		final JavaField identifierField;
+		final JavaField orderField;
+		final boolean referenceFieldPresent;
+
+		private Views(int version, List<JavaField> fields) {
+			this.version = version;
+			List<JavaField> staticFields = new ArrayList<JavaField>();
+			List<JavaField> instanceFields = new ArrayList<JavaField>();
+			List<JavaField> nonAutoHandledInstanceFields = new ArrayList<JavaField>();
+			List<JavaField> listFields = new ArrayList<JavaField>();
+			JavaField identifierField = null;
+			JavaField orderField = null;
+			boolean referenceFieldPresent = false;
+			for(JavaField f : fields) {
+				if (f.isStatic()) {
+					staticFields.add(f);
+				} else {
+					instanceFields.add(f);
+					if (!f.isAutoHandledField()) nonAutoHandledInstanceFields.add(f);
+					if (f.isOnList()) listFields.add(f);
+				}
+				// the first field wins, as it did when these were scans
+				if (f.getName() != null && !byName.containsKey(f.getName())) byName.put(f.getName(), f);
+				if (identifierField == null && f.isIdentifier()) identifierField = f;
+				if (orderField == null && f.isOrder()) orderField = f;
+				referenceFieldPresent |= f.getReferences() != null;
+			}
+			this.staticFields = Collections.unmodifiableList(staticFields);
+			this.instanceFields = Collections.unmodifiableList(instanceFields);
+			this.nonAutoHandledInstanceFields = Collections.unmodifiableList(nonAutoHandledInstanceFields);
+			this.listFields = Collections.unmodifiableList(listFields);
+			this.identifierField = identifierField;
+			this.orderField = orderField;
+			this.referenceFieldPresent = referenceFieldPresent;
+		}
+	}
+}
\ No newline at end of file
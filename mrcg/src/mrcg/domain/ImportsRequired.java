@@ -16,6 +16,10 @@ package mrcg.domain;
 
 import java.util.Set;
 
+import mrcg.utils.ImportCollector;
+
 public interface ImportsRequired {
 	public Set<String> getRequiredImports();
+	/** Adds the types this refers to, see {@link ImportCollector}. */
+	public void collectImports(ImportCollector imports);
 }
\ No newline at end of file
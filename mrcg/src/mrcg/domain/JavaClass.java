@@ -14,14 +14,12 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import mrcg.utils.ImportUtils;
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
 import mrcg.utils.Utils;
 
 import org.apache.commons.lang.StringUtils;
@@ -36,8 +34,8 @@ public class JavaClass implements ImportsRequired, Writable {
 	protected List<String> annotations = new ArrayList<String>();
 	protected List<JavaType> implementsions = new ArrayList<JavaType>();	
 	protected List<JavaType> imports = new ArrayList<JavaType>();
-	protected List<JavaField> fields = new ArrayList<JavaField>();
-	protected List<JavaMethod> methods = new ArrayList<JavaMethod>();
+	protected FieldList fields = new FieldList();
+	protected MethodList methods = new MethodList();
 	protected List<JavaConstructor> constructors = new ArrayList<JavaConstructor>();
 	
 	protected List<Index> indexes = new ArrayList<Index>();
@@ -61,6 +59,28 @@ public class JavaClass implements ImportsRequired, Writable {
 		this.pkg = pkg;
 		this.name = name;
 	}
+
+	/**
+	 * Copies <code>jclass</code> under a new name.  Fields, methods, constructors and
+	 * indexes are shared with the original; annotations, imports and implemented
+	 * interfaces are copied so they can be added to without touching the original.
+	 */
+	public JavaClass(JavaClass jclass, String pkg, String name) {
+		this(pkg, name);
+		this.extendsion = jclass.extendsion;
+		this.isAbstract = jclass.isAbstract;
+		this.mapping = jclass.mapping;
+		this.annotations = new ArrayList<String>(jclass.annotations);
+		this.implementsions = new ArrayList<JavaType>(jclass.implementsions);
+		this.imports = new ArrayList<JavaType>(jclass.imports);
+		this.fields = jclass.fields;
+		this.methods = jclass.methods;
+		this.constructors = jclass.constructors;
+		this.indexes = jclass.indexes;
+		this.tableName = jclass.tableName;
+		this.preExisting = jclass.preExisting;
+		this.methodSpacer = jclass.methodSpacer;
+	}
 	
 	public String getLowerCamelPlural() {
 		return Utils.pluralize(StringUtils.uncapitalize(name));
@@ -95,7 +115,7 @@ public class JavaClass implements ImportsRequired, Writable {
 	}
 
 	public JavaType getJavaType() {
-		return new JavaType(getCompleteName());
+		return JavaType.of(getCompleteName());
 	}
 	
 	public boolean isAbstract() {
@@ -155,53 +175,30 @@ public class JavaClass implements ImportsRequired, Writable {
 		return Utils.toSpacedCamelCase(name);
 	}
 
+	// the views below are kept by the field list until a field changes, and can't be modified
 	public List<JavaField> getStaticFields() {
-		List<JavaField> list = new ArrayList<JavaField>();
-		for(JavaField f : fields) {
-			if (f.isStatic()) {
-				list.add(f);
-			}
-		}
-		return list;
+		return fields.views().staticFields;
 	}
 	public List<JavaField> getInstanceFields() {
-		List<JavaField> list = new ArrayList<JavaField>();
-		for(JavaField f : fields) {
-			if (!f.isStatic()) {
-				list.add(f);
-			}
-		}
-		return list;
+		return fields.views().instanceFields;
 	}
 
 	public List<JavaField> getNonAutoHandledInstanceFields() {
-		List<JavaField> list = new ArrayList<JavaField>();
-		for(JavaField f : fields) {
-			if (!f.isStatic() && !f.isAutoHandledField()) {
-				list.add(f);
-			}
-		}
-		return list;
+		return fields.views().nonAutoHandledInstanceFields;
 	}
 	
 	public List<JavaField> getListFields() {
-		List<JavaField> list = new ArrayList<JavaField>();
-		for(JavaField f : fields) {
-			if (!f.isStatic() && f.isOnList()) {
-				list.add(f);
-			}
-		}
-		return list;
+		return fields.views().listFields;
 	}
 	
 	public void setFields(List<JavaField> fields) {
-		this.fields = fields;
+		this.fields = (fields instanceof FieldList)?(FieldList)fields:new FieldList(fields);
 	}
 	public List<JavaMethod> getMethods() {
 		return methods;
 	}
 	public void setMethods(List<JavaMethod> methods) {
-		this.methods = methods;
+		this.methods = (methods instanceof MethodList)?(MethodList)methods:new MethodList(methods);
 	}
 	public List<JavaType> getImplementsions() {
 		return implementsions;
@@ -213,11 +210,12 @@ public class JavaClass implements ImportsRequired, Writable {
 	public void addConstructor(JavaConstructor constructor) {
 		constructors.add(constructor);
 	}
-	public void addMethod(JavaMethod method) {
-		for(JavaMethod jm : methods) {
-			if (jm.definitionsAreEqual(method)) return;
-		}
-		methods.add(method);
+	/**
+	 * Adds <code>method</code> unless one with the same signature is already defined.
+	 * @return whether it was added
+	 */
+	public boolean addMethod(JavaMethod method) {
+		return methods.addIfAbsent(method);
 	}
 	public void addField(JavaField field) {
 		fields.add(field);
@@ -241,71 +239,44 @@ public class JavaClass implements ImportsRequired, Writable {
 	}
 
 	public JavaField getField(String fieldName) {
-		for(JavaField f : fields) {
-			if (fieldName.equals(f.getName())) {
-				return f;
-			}
-		}
-		return null;
+		return fields.views().byName.get(fieldName);
 	}
 	public boolean hasField(String fieldName) {
 		return getField(fieldName) != null;
 	}
 	
 	public JavaField getIdentifierField() {
-		for(JavaField jf : fields) {
-			if (jf.isIdentifier()) {
-				return jf;
-			}
-		}
-		return null;
+		return fields.views().identifierField;
 	}
 
 	public JavaField getOrderField() {
-		for(JavaField jf : fields) {
-			if (jf.isOrder()) {
-				return jf;
-			}
-		}
-		return null;
+		return fields.views().orderField;
 	}
 	
 	public boolean isReferenceFieldPresent() {
-		for(JavaField f : getFields()) {
-			if (f.getReferences() != null) return true;
-		}
-		return false;
+		return fields.views().referenceFieldPresent;
 	}
 	
 	
 	public Set<String> getRequiredImports() {
-		Set<String> set = new HashSet<String>();
-		for(JavaType jt : imports) {
-			set.addAll(jt.getRequiredImports());
-		}
-		for(JavaField field : fields) {
-			set.addAll(field.getRequiredImports());
-		}
-		for(JavaMethod method : methods) {
-			set.addAll(method.getRequiredImports());
-		}
-		for(JavaType jt : implementsions) {
-			set.addAll(jt.getRequiredImports());
-		}
-		return set;
+		return new ImportCollector().add(this).getTypes();
+	}
+
+	public void collectImports(ImportCollector collector) {
+		collector.addAll(imports).addAll(fields).addAll(methods).addAll(implementsions);
 	}
 	
 	public List<Index> getIndexes() {
 		return indexes;
 	}
 	
-	public void out(PrintWriter out) throws IOException {
-		out.println("package " + pkg + ";\n");
+	public void out(Emitter out) {
+		out.print("package ").print(pkg).println(";").println();
 		
-		List<String> imports = ImportUtils.cleanImports(getRequiredImports(), pkg);
+		List<String> imports = new ImportCollector().add(this).getImports(pkg);
 		if (!imports.isEmpty()) {
 			for(String i : imports) {
-				out.println("import " + i + ";");
+				out.print("import ").print(i).println(";");
 			}
 			out.println();
 		}
@@ -314,7 +285,7 @@ public class JavaClass implements ImportsRequired, Writable {
 			out.println(annotation);
 		}
 		
-		out.print("public " + (isAbstract?"abstract ":"") + "class " + getName());
+		out.print("public ").print(isAbstract?"abstract class ":"class ").print(getName());
 		
 		if (extendsion != null) {
 			out.print(" extends ");
@@ -366,5 +337,9 @@ public class JavaClass implements ImportsRequired, Writable {
 		
 		out.print("}");
 		
-	}	
+	}
+
+	public String toString() {
+		return getName();
+	}
 }
\ No newline at end of file
@@ -14,14 +14,13 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
+
 public class JavaConstructor implements ImportsRequired, Writable {
 	private Visibility visibility = Visibility.Public;
 	private JavaType returnType;
@@ -70,24 +69,20 @@ public class JavaConstructor implements ImportsRequired, Writable {
 	}
 
 	public Set<String> getRequiredImports() {
-		Set<String> set = new HashSet<String>();
-		set.addAll(returnType.getRequiredImports());
-		for(JavaParameter p : parameters) {
-			set.addAll(p.getRequiredImports());
-		}
-		for(JavaType jt : throwers) {
-			set.addAll(jt.getRequiredImports());
-		}
-		return set;
+		return new ImportCollector().add(this).getTypes();
+	}
+
+	public void collectImports(ImportCollector imports) {
+		imports.add(returnType).addAll(parameters).addAll(throwers);
 	}
 
-	public void out(PrintWriter out) throws IOException {
+	public void out(Emitter out) {
 		out(out, true);
 	}
 	
-	public void out(PrintWriter out, boolean includeBody) throws IOException {
-		out.print("\t" + visibility.getOutput());
-		out.print(returnType.getJustClassName() + "(");
+	public void out(Emitter out, boolean includeBody) {
+		out.print('\t').print(visibility.getOutput());
+		out.print(returnType.getJustClassName()).print('(');
 		for(int i = 0; i < parameters.size(); i++) {
 			JavaParameter p = parameters.get(i);
 			p.out(out);
@@ -96,7 +91,7 @@ public class JavaConstructor implements ImportsRequired, Writable {
 			}
 		}
 		
-		out.print(")");
+		out.print(')');
 		if (!throwers.isEmpty()) {
 			out.print(" throws ");
 			for(int i = 0; i < throwers.size(); i++) {
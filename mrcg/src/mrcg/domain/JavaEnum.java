@@ -14,12 +14,11 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-import mrcg.utils.ImportUtils;
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
 
 
 public class JavaEnum extends JavaClass implements ImportsRequired, Writable {
@@ -54,18 +53,18 @@ public class JavaEnum extends JavaClass implements ImportsRequired, Writable {
 		return true;
 	}
 		
-	public void out(PrintWriter out) throws IOException {
-		out.println("package " + pkg + ";\n");
+	public void out(Emitter out) {
+		out.print("package ").print(pkg).println(";").println();
 		
-		List<String> imports = ImportUtils.cleanImports(getRequiredImports(), pkg);
+		List<String> imports = new ImportCollector().add(this).getImports(pkg);
 		if (!imports.isEmpty()) {
 			for(String i : imports) {
-				out.println("import " + i + ";");
+				out.print("import ").print(i).println(";");
 			}
 			out.println();
 		}
 		
-		out.print("public enum " + getName());
+		out.print("public enum ").print(getName());
 		
 		if (!implementsions.isEmpty()) {
 			out.print(" implements ");
@@ -79,7 +78,7 @@ public class JavaEnum extends JavaClass implements ImportsRequired, Writable {
 		out.println(" {");
 		
 		for(int i = 0; i < values.size(); i++) {
-			out.print("\t");
+			out.print('\t');
 			values.get(i).out(out);
 			if (i == (values.size()-1)) {
 				out.println(";");
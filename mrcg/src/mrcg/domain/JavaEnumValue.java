@@ -14,8 +14,7 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
+import mrcg.utils.Emitter;
 
 public class JavaEnumValue implements Writable {
 	private String name;
@@ -31,7 +30,7 @@ public class JavaEnumValue implements Writable {
 	public String getValue() {return value;}
 	public void setValue(String value) {this.value = value;}
 	
-	public void out(PrintWriter out) throws IOException {
-		out.print(name + "(\"" + value + "\")");
+	public void out(Emitter out) {
+		out.print(name).print("(\"").print(value).print("\")");
 	}	
 }
\ No newline at end of file
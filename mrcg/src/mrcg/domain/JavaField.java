@@ -14,19 +14,28 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
 import mrcg.utils.Utils;
 
 public class JavaField implements ImportsRequired, Writable {
+	private static final Set<String> AUTO_HANDLED = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("id", "createdAt", "updatedAt")));
+	private static final Set<DBType> TEXT_FIELD = Collections.unmodifiableSet(EnumSet.of(DBType.Double, DBType.DoublePrecision, DBType.Integer, DBType.Long, DBType.Varchar));
+
 	private Visibility visibility = Visibility.Private;
 	private boolean isStatic = false;
+	private boolean isFinal = false;
+	private boolean isTransient = false;
 	private JavaType type;
 	private String name;
 	private String value;
@@ -58,6 +67,9 @@ public class JavaField implements ImportsRequired, Writable {
 	private boolean indexed = false;
 	
 	private String dbField = null;
+
+	// the fields of the class this belongs to, told when something it filters on changes
+	private FieldList owner;
 	
 	public JavaField() {}
 	public JavaField(JavaType type, String name) {
@@ -66,15 +78,17 @@ public class JavaField implements ImportsRequired, Writable {
 	}
 		
 	public String getName() {return name;}
-	public void setName(String name) {this.name = name;}
+	public void setName(String name) {this.name = name; changed();}
 	public JavaType getType() {return type;}
 	public void setType(JavaType type) {this.type = type;}
 	public Set<String> getRequiredImports() {
-		Set<String> set = Utils.toSet(type.getName());
-		return set;
+		return new ImportCollector().add(this).getTypes();
+	}
+	public void collectImports(ImportCollector imports) {
+		imports.add(type.getName());
 	}
 	public boolean isIdentifier() {return identifier;}
-	public void setIdentifier(boolean identifier) {this.identifier = identifier;}
+	public void setIdentifier(boolean identifier) {this.identifier = identifier; changed();}
 	public boolean isRequired() {return required;}
 	public void setRequired(boolean required) {this.required = required;}
 	public int getMinLength() {return minLength;}
@@ -82,17 +96,21 @@ public class JavaField implements ImportsRequired, Writable {
 	public int getMaxLength() {return maxLength;}
 	public void setMaxLength(int maxLength) {this.maxLength = maxLength;}
 	public boolean isOnList() {return onList;}
-	public void setOnList(boolean onList) {this.onList = onList;}
+	public void setOnList(boolean onList) {this.onList = onList; changed();}
 	public boolean isOnView() {return onView;}
 	public void setOnView(boolean onView) {this.onView = onView;}
 	public JavaClass getReferences() {return references;}
-	public void setReferences(JavaClass references) {this.references = references;}
+	public void setReferences(JavaClass references) {this.references = references; changed();}
 	public String getLabel() {return label;}
 	public void setLabel(String label) {this.label = label;}
 	public Visibility getVisibility() {return visibility;}
 	public void setVisibility(Visibility visibility) {this.visibility = visibility;}
 	public boolean isStatic() {return isStatic;}
-	public void setStatic(boolean isStatic) {this.isStatic = isStatic;}
+	public void setStatic(boolean isStatic) {this.isStatic = isStatic; changed();}
+	public boolean isFinal() {return isFinal;}
+	public void setFinal(boolean isFinal) {this.isFinal = isFinal;}
+	public boolean isTransient() {return isTransient;}
+	public void setTransient(boolean isTransient) {this.isTransient = isTransient;}
 	public String getValue() {return value;}
 	public void setValue(String value) {this.value = value;}
 	public DBType getDbType() {return dbType;}
@@ -100,7 +118,7 @@ public class JavaField implements ImportsRequired, Writable {
 	public boolean isUnique() {return unique;}
 	public void setUnique(boolean unique) {this.unique = unique;}
 	public boolean isOrder() {return order;}
-	public void setOrder(boolean order) {this.order = order;}
+	public void setOrder(boolean order) {this.order = order; changed();}
 	public boolean isEncrypted() {return encrypted;}
 	public void setEncrypted(boolean encrypted) {this.encrypted = encrypted;}
 	public boolean isExcludedFromJavaOutput() {
@@ -141,18 +159,19 @@ public class JavaField implements ImportsRequired, Writable {
 	
 	public void setAutoHandledField(boolean autoHandledField) {
 		this.autoHandledField = autoHandledField;
+		changed();
 	}
 	
 	public boolean isAutoHandledField() {
-		return autoHandledField || Utils.toSet("id", "createdAt", "updatedAt").contains(name);
+		return autoHandledField || AUTO_HANDLED.contains(name);
 	}
 	
 	public boolean isTextField() {
-		return Utils.toSet(DBType.Double, DBType.DoublePrecision, DBType.Integer, DBType.Long, DBType.Varchar).contains(dbType);
+		return TEXT_FIELD.contains(dbType);
 	}
 
 	public boolean isTextArea() {
-		return (dbType != null) && Utils.toSet(DBType.Text).contains(dbType);
+		return dbType == DBType.Text;
 	}
 	
 	public boolean isSelectList() {
@@ -160,7 +179,7 @@ public class JavaField implements ImportsRequired, Writable {
 	}
 	
 	public boolean isCheckBox() {
-		return Utils.toSet(DBType.Boolean).contains(dbType);
+		return dbType == DBType.Boolean;
 	}
 	
 	public boolean isDateField() {
@@ -215,22 +234,39 @@ public class JavaField implements ImportsRequired, Writable {
 		return name.toUpperCase() + "_KEY";
 	}
 	
-	public void out(PrintWriter out) throws IOException {
+	void setOwner(FieldList owner) {
+		this.owner = owner;
+	}
+
+	private void changed() {
+		FieldList owner = this.owner;
+		if (owner != null) {
+			owner.invalidate();
+		}
+	}
+	
+	public void out(Emitter out) {
 		if (isExcludedFromJavaOutput()) return;
 		for(String annotation : annotations) {
-			out.println("\t" + annotation);
+			out.print('\t').println(annotation);
 		}
 
-		out.print("\t" + visibility.getOutput());
+		out.print('\t').print(visibility.getOutput());
 		if (isStatic) {
 			out.print("static ");
 		}
+		if (isFinal) {
+			out.print("final ");
+		}
+		if (isTransient) {
+			out.print("transient ");
+		}
 		type.out(out);
-		out.print(" " + getName());
+		out.print(' ').print(getName());
 		if (value == null) {
 			out.println(";");
 		} else {
-			out.println(" = " + value);
+			out.print(" = ").print(value).println(";");
 		}
 	}	
 	
@@ -14,23 +14,27 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
+
 public class JavaMethod implements ImportsRequired, Writable {
 	private String scope = "public";
 	private String name;
 	private boolean isAbstract;
+	private boolean isStatic;
 	private JavaType returnType;
 	private List<JavaParameter> parameters = new ArrayList<JavaParameter>();
 	private String body;
 	private List<JavaType> throwers = new ArrayList<JavaType>();
+	private List<String> annotations = new ArrayList<String>();
+
+	private String signature;
+	// the methods of the class this belongs to, told when the signature changes
+	private MethodList owner;
 	
 	public JavaMethod() {}
 
@@ -56,6 +60,7 @@ public class JavaMethod implements ImportsRequired, Writable {
 	}
 	public void setName(String name) {
 		this.name = name;
+		changed();
 	}
 	public JavaType getReturnType() {
 		return returnType;
@@ -74,6 +79,7 @@ public class JavaMethod implements ImportsRequired, Writable {
 	}
 	public void setParameters(List<JavaParameter> parameters) {
 		this.parameters = parameters;
+		changed();
 	}
 	public List<JavaType> getThrowers() {
 		return throwers;
@@ -87,9 +93,16 @@ public class JavaMethod implements ImportsRequired, Writable {
 	public boolean isAbstract() {
 		return isAbstract;
 	}
+	public void setStatic(boolean isStatic) {
+		this.isStatic = isStatic;
+	}
+	public boolean isStatic() {
+		return isStatic;
+	}
 	
 	public void addParameter(JavaParameter parameter) {
 		parameters.add(parameter);
+		changed();
 	}
 	
 	public void addThrower(JavaType thrower) {
@@ -97,44 +110,69 @@ public class JavaMethod implements ImportsRequired, Writable {
 	}
 	
 
+	public void addAnnotation(String annotation) {
+		annotations.add(annotation);
+	}
+
 	public Set<String> getRequiredImports() {
-		Set<String> set = new HashSet<String>();
-		set.addAll(returnType.getRequiredImports());
-		for(JavaParameter p : parameters) {
-			set.addAll(p.getRequiredImports());
-		}
-		for(JavaType jt : throwers) {
-			set.addAll(jt.getRequiredImports());
-		}
-		return set;
+		return new ImportCollector().add(this).getTypes();
+	}
+
+	public void collectImports(ImportCollector imports) {
+		imports.add(returnType).addAll(parameters).addAll(throwers);
 	}
 
-	public void out(PrintWriter out) throws IOException {
+	public void out(Emitter out) {
 		out(out, true);
 	}
 	
 	public boolean definitionsAreEqual(JavaMethod jm) {
-		if (!jm.getName().equals(getName())) return false;
-		if (jm.getParameters().size() != getParameters().size()) return false;
-		if (!jm.getParametersMap().keySet().equals(getParametersMap().keySet())) return false;
-		return true;
+		return getSignature().equals(jm.getSignature());
 	}
-	
-	private Map<String, JavaType> getParametersMap() {
-		Map<String, JavaType> map = new HashMap<String, JavaType>();
-		for(JavaParameter jp : parameters) {
-			map.put(jp.getName(), jp.getType());
+
+	/**
+	 * The name and the raw types of the parameters, in order, e.g. <code>get(java.lang.Class,java.lang.Long)</code>:
+	 * what the compiler tells methods apart by.  Once the method is in a class change its
+	 * parameters through {@link #addParameter} or {@link #setParameters} so the class notices.
+	 */
+	public String getSignature() {
+		String signature = this.signature;
+		if (signature == null) {
+			StringBuilder b = new StringBuilder(String.valueOf(name)).append('(');
+			for(int i = 0; i < parameters.size(); i++) {
+				if (i > 0) b.append(',');
+				b.append(parameters.get(i).getType().getName());
+			}
+			signature = b.append(')').toString();
+			this.signature = signature;
+		}
+		return signature;
+	}
+
+	void setOwner(MethodList owner) {
+		this.owner = owner;
+	}
+
+	private void changed() {
+		signature = null;
+		if (owner != null) {
+			owner.invalidate();
 		}
-		return map;
 	}
 	
-	public void out(PrintWriter out, boolean includeBody) throws IOException {
-		out.print("\t" + scope + " ");
+	public void out(Emitter out, boolean includeBody) {
+		for(String annotation : annotations) {
+			out.print('\t').println(annotation);
+		}
+		out.print('\t').print(scope).print(' ');
+		if (isStatic) {
+			out.print("static ");
+		}
 		if (isAbstract) {
 			out.print("abstract ");
 		}
 		returnType.out(out);
-		out.print(" " + name + "(");
+		out.print(' ').print(name).print('(');
 		for(int i = 0; i < parameters.size(); i++) {
 			JavaParameter p = parameters.get(i);
 			p.out(out);
@@ -143,7 +181,7 @@ public class JavaMethod implements ImportsRequired, Writable {
 			}
 		}
 		
-		out.print(")");
+		out.print(')');
 		if (!throwers.isEmpty()) {
 			out.print(" throws ");
 			for(int i = 0; i < throwers.size(); i++) {
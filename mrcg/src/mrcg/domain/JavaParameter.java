@@ -14,10 +14,11 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Set;
 
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
+
 public class JavaParameter implements ImportsRequired, Writable {
 	private String name;
 	private JavaType type;
@@ -44,9 +45,13 @@ public class JavaParameter implements ImportsRequired, Writable {
 	public Set<String> getRequiredImports() {
 		return type.getRequiredImports();
 	}
+
+	public void collectImports(ImportCollector imports) {
+		imports.add(type);
+	}
 	
-	public void out(PrintWriter out) throws IOException {
+	public void out(Emitter out) {
 		type.out(out);
-		out.print(" " + name);
+		out.print(' ').print(name);
 	}	
 }
\ No newline at end of file
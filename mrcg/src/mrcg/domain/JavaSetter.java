@@ -24,7 +24,7 @@ public class JavaSetter extends JavaMethod {
 		JavaParameter p = new JavaParameter();
 			p.setName(field.getName());
 			p.setType(field.getType());
-		getParameters().add(p);
+		addParameter(p);
 		
 		setBody("\t\tthis." + field.getName() + " = " + field.getName() + ";");
 	}
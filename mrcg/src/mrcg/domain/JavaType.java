@@ -14,42 +14,47 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import mrcg.utils.Emitter;
+import mrcg.utils.ImportCollector;
 import mrcg.utils.Utils;
 
 
 public class JavaType implements ImportsRequired, Writable {
-	public static final JavaType VOID = new JavaType("void");
-	public static final JavaType OBJECT = new JavaType("java.lang.Object");
-	public static final JavaType DATE_TIME = new JavaType("java.time.LocalDateTime");
-	public static final JavaType EMAIL = new JavaType("java.lang.String");
-	public static final JavaType STRING = new JavaType("java.lang.String");
-	public static final JavaType LONG = new JavaType("java.lang.Long");
-	public static final JavaType INTEGER = new JavaType("java.lang.Integer");
-	public static final JavaType DOUBLE = new JavaType("java.lang.Double");
-	public static final JavaType BOOLEAN = new JavaType("java.lang.Boolean");
-	public static final JavaType PBOOLEAN = new JavaType("boolean");
-	public static final JavaType PLONG = new JavaType("long");
-	
-	public static JavaType LOGIC_FACADE;
+	// interned types by name and type arguments, e.g. java.util.List<java.lang.Long>
+	private static final ConcurrentMap<String, JavaType> INTERNED = new ConcurrentHashMap<String, JavaType>();
+
+	public static final JavaType VOID = of("void");
+	public static final JavaType OBJECT = of("java.lang.Object");
+	public static final JavaType DATE_TIME = of("java.time.LocalDateTime");
+	// told apart from STRING by identity, so it isn't interned
+	public static final JavaType EMAIL = new JavaType("java.lang.String").freeze();
+	public static final JavaType STRING = of("java.lang.String");
+	public static final JavaType LONG = of("java.lang.Long");
+	public static final JavaType INTEGER = of("java.lang.Integer");
+	public static final JavaType DOUBLE = of("java.lang.Double");
+	public static final JavaType BOOLEAN = of("java.lang.Boolean");
+	public static final JavaType PBOOLEAN = of("boolean");
+	public static final JavaType PLONG = of("long");
 	
-	public static final JavaType SERIALIZABLE = new JavaType("java.io.Serializable");
+	public static final JavaType SERIALIZABLE = of("java.io.Serializable");
 	
-	public static final JavaType LIST = new JavaType("java.util.List");
-	public static final JavaType RESULT_SET = new JavaType("java.sql.ResultSet");
+	public static final JavaType LIST = of("java.util.List");
+	public static final JavaType RESULT_SET = of("java.sql.ResultSet");
 	
-	public static final JavaType BINARY = new JavaType("byte[]");
+	public static final JavaType BINARY = of("byte[]");
 	
 	private String name;
 	private boolean importIgnore;
 	private List<JavaType> types = new ArrayList<JavaType>();
+	private boolean frozen;
 	
 	public JavaType() {}
 
@@ -66,21 +71,85 @@ public class JavaType implements ImportsRequired, Writable {
 		this.name = name;
 		this.types.addAll(Arrays.asList(types));
 	}
-	
+
+	/**
+	 * The shared, unmodifiable type with this name and type arguments; asking twice
+	 * gives the same instance.  Prefer it to the constructors for anything not built up
+	 * step by step.
+	 */
+	public static JavaType of(String name, JavaType...types) {
+		JavaType[] interned = new JavaType[types.length];
+		StringBuilder key = new StringBuilder(name);
+		for(int i = 0; i < types.length; i++) {
+			interned[i] = types[i].intern();
+			key.append(i == 0?'<':',').append(interned[i].getKey());
+		}
+		if (types.length > 0) key.append('>');
+
+		JavaType type = INTERNED.get(key.toString());
+		if (type == null) {
+			type = new JavaType(name, interned).freeze();
+			JavaType existing = INTERNED.putIfAbsent(key.toString(), type);
+			if (existing != null) type = existing;
+		}
+		return type;
+	}
+
+	/** The shared type named <code>name</code> that is never imported, e.g. a wildcard. */
+	public static JavaType unimported(String name) {
+		JavaType type = INTERNED.get("!" + name);
+		if (type == null) {
+			type = new JavaType(name, true).freeze();
+			JavaType existing = INTERNED.putIfAbsent("!" + name, type);
+			if (existing != null) type = existing;
+		}
+		return type;
+	}
+
+	/** @return the interned equivalent of this type, this one if it can't be interned */
+	public JavaType intern() {
+		if (importIgnore || (frozen && INTERNED.get(getKey()) == this)) return this;
+		return of(name, types.toArray(new JavaType[types.size()]));
+	}
+
+	private String getKey() {
+		String base = importIgnore?"!" + name:name;
+		if (types.isEmpty()) return base;
+		StringBuilder key = new StringBuilder(base);
+		for(int i = 0; i < types.size(); i++) {
+			key.append(i == 0?'<':',').append(types.get(i).getKey());
+		}
+		return key.append('>').toString();
+	}
+
+	private JavaType freeze() {
+		types = Collections.unmodifiableList(types);
+		frozen = true;
+		return this;
+	}
+
+	private void checkModifiable() {
+		if (frozen) {
+			throw new UnsupportedOperationException(getKey() + " is shared and can't be modified");
+		}
+	}
 	
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
+		checkModifiable();
 		this.name = name;
 	}
 	public List<JavaType> getTypes() {
 		return types;
 	}
 	public void setTypes(List<JavaType> types) {
+		checkModifiable();
 		this.types = types;
 	}
 	public void addType(JavaType type) {
+		checkModifiable();
 		types.add(type);
 	}
 	
@@ -93,17 +162,19 @@ public class JavaType implements ImportsRequired, Writable {
 	}
 	
 	public Set<String> getRequiredImports() {
-		Set<String> set = new HashSet<String>();
+		return new ImportCollector().add(this).getTypes();
+	}
+
+	public void collectImports(ImportCollector imports) {
 		if (!importIgnore) {
-			set.add(name);
+			imports.add(name);
 			for(JavaType type : types) {
-				set.addAll(type.getRequiredImports());
+				type.collectImports(imports);
 			}
 		}
-		return set;
 	}
 	
-	public void out(PrintWriter out) throws IOException {
+	public void out(Emitter out) {
 		out.print(getJustClassName());
 		if (types.size() > 0) {
 			out.print('<');
@@ -0,0 +1,111 @@
+package mrcg.domain;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class's methods, indexed by {@link JavaMethod#getSignature signature} so
+ * {@link JavaClass#addMethod} can tell whether a method is already defined without
+ * comparing it to every other one.  Methods added straight to the list are indexed
+ * too.  A method belongs to one list at a time and tells it when its signature changes.
+ */
+class MethodList extends AbstractList<JavaMethod> {
+	private final List<JavaMethod> methods = new ArrayList<JavaMethod>();
+	private final Map<String, JavaMethod> signatures = new HashMap<String, JavaMethod>();
+	private boolean stale = false;
+
+	MethodList() {}
+
+	MethodList(Collection<JavaMethod> methods) {
+		addAll(methods);
+	}
+
+	public JavaMethod get(int index) {
+		return methods.get(index);
+	}
+
+	public int size() {
+		return methods.size();
+	}
+
+	public JavaMethod set(int index, JavaMethod method) {
+		JavaMethod previous = methods.set(index, method);
+		release(previous);
+		adopt(method);
+		stale = true;
+		return previous;
+	}
+
+	public void add(int index, JavaMethod method) {
+		methods.add(index, method);
+		adopt(method);
+		modCount++;
+		if (!stale && !signatures.containsKey(method.getSignature())) {
+			signatures.put(method.getSignature(), method);
+		}
+	}
+
+	public JavaMethod remove(int index) {
+		JavaMethod previous = methods.remove(index);
+		release(previous);
+		modCount++;
+		stale = true;
+		return previous;
+	}
+
+	/** @return whether a method with the same signature was already in the list, in which case <code>method</code> isn't added */
+	boolean addIfAbsent(JavaMethod method) {
+		if (getSignatures().containsKey(method.getSignature())) {
+			return false;
+		}
+		add(method);
+		return true;
+	}
+
+	void invalidate() {
+		stale = true;
+	}
+
+	private Map<String, JavaMethod> getSignatures() {
+		if (stale) {
+			signatures.clear();
+			for(JavaMethod method : methods) {
+				if (!signatures.containsKey(method.getSignature())) {
+					signatures.put(method.getSignature(), method);
+				}
+			}
+			stale = false;
+		}
+		return signatures;
+	}
+
+	private void adopt(JavaMethod method) {
+		if (method != null) {
+			method.setOwner(this);
+		}
+	}
+
+	private void release(JavaMethod method) {
+		if (method != null && !methods.contains(method)) {
+			method.setOwner(null);
+		}
+	}
+}
\ No newline at end of file
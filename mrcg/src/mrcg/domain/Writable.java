@@ -14,9 +14,8 @@ package mrcg.domain;
  * limitations under the License.
  */
 
-import java.io.IOException;
-import java.io.PrintWriter;
+import mrcg.utils.Emitter;
 
 public interface Writable {
-	public void out(PrintWriter out) throws IOException;
+	public void out(Emitter out);
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package mrcg.output;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Remembers the size, modification time and content hash of every file the
+ * generator wrote.  While a file's size and modification time are unchanged its
+ * recorded hash is trusted, so deciding whether new content differs from what is
+ * on disk costs a stat instead of a read.  Files that drifted, or that were never
+ * recorded, are read and compared once and then recorded.
+ */
+public class ContentIndex {
+	private final File file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	public ContentIndex(File file) {
+		this.file = file;
+	}
+
+	public void load() throws IOException {
+		entries.clear();
+		if (!file.exists()) return;
+
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] parts = line.split("\t", 4);
+				if (parts.length == 4) {
+					entries.put(parts[3], new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly((Reader)in);
+		}
+	}
+
+	public void save() throws IOException {
+		file.getParentFile().mkdirs();
+		Writer out = null;
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			for(Map.Entry<String, Entry> entry : new TreeMap<String, Entry>(entries).entrySet()) {
+				Entry e = entry.getValue();
+				out.write(e.length + "\t" + e.lastModified + "\t" + e.hash + "\t" + entry.getKey() + "\n");
+			}
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/** @return whether <code>target</code> already holds <code>content</code>, whose hash is <code>hash</code> */
+	public boolean matches(File target, byte[] content, String hash) throws IOException {
+		long lastModified = target.lastModified();
+		if (lastModified == 0L && !target.exists()) return false;
+		long length = target.length();
+
+		String path = target.getAbsolutePath();
+		Entry entry = entries.get(path);
+		if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+			return entry.hash.equals(hash);
+		}
+
+		if (length != content.length) return false;
+		if (!Arrays.equals(FileUtils.readFileToByteArray(target), content)) return false;
+		entries.put(path, new Entry(length, lastModified, hash));
+		return true;
+	}
+
+	/** Records <code>target</code> as just written with content hashing to <code>hash</code>. */
+	public void record(File target, String hash) {
+		entries.put(target.getAbsolutePath(), new Entry(target.length(), target.lastModified(), hash));
+	}
+
+	private static class Entry {
+		private final long length;
+		private final long lastModified;
+		private final String hash;
+
+		private Entry(long length, long lastModified, String hash) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
\ No newline at end of file
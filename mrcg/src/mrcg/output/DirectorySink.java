@@ -0,0 +1,231 @@
+package mrcg.output;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mrcg.utils.Fingerprint;
+
+/**
+ * Writes output into a project directory.  Files whose content is unchanged are
+ * skipped without being read by way of the {@link ContentIndex} kept in
+ * <code>.mrcg/content-index</code>.  Changed files are only staged; {@link #close}
+ * commits them all at once, each written to a temporary sibling and then moved
+ * over the original, so an interrupted run never leaves a half written file.
+ * Directories are staged too, and created on commit.  Directories are committed
+ * concurrently.
+ */
+public class DirectorySink implements OutputSink {
+	private final File directory;
+	private final ContentIndex index;
+	private final Map<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+	private final Set<File> pendingDirectories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean fsync = false;
+
+	public DirectorySink(File directory) throws IOException {
+		this.directory = directory;
+		this.index = new ContentIndex(new File(directory, ".mrcg/content-index"));
+		index.load();
+	}
+
+	/** How many directories are committed at once. */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/** Whether committed files, and the directories they are in, are forced to disk. */
+	public void setFsync(boolean fsync) {
+		this.fsync = fsync;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public File toFile(String path) {
+		File file = new File(path);
+		return file.isAbsolute()?file:new File(directory, path);
+	}
+
+	public boolean exists(String path) {
+		File file = toFile(path);
+		return pending.containsKey(file.getAbsolutePath()) || pendingDirectories.contains(file) || file.exists();
+	}
+
+	public boolean write(String path, byte[] content) throws IOException {
+		File file = toFile(path);
+		String hash = Fingerprint.of(content);
+		if (index.matches(file, content, hash)) {
+			pending.remove(file.getAbsolutePath());
+			return false;
+		}
+		pending.put(file.getAbsolutePath(), new Pending(file, content, null, hash));
+		return true;
+	}
+
+	public void copy(File source, String path) throws IOException {
+		File file = toFile(path);
+		pending.put(file.getAbsolutePath(), new Pending(file, null, source, null));
+	}
+
+	public void createDirectory(String path) {
+		pendingDirectories.add(toFile(path));
+	}
+
+	/** Commits the staged files and directories. @return how many files were written */
+	public int close() throws IOException {
+		Map<File, List<Pending>> directories = new TreeMap<File, List<Pending>>();
+		for(Pending p : pending.values()) {
+			List<Pending> files = directories.get(p.file.getParentFile());
+			if (files == null) {
+				files = new ArrayList<Pending>();
+				directories.put(p.file.getParentFile(), files);
+			}
+			files.add(p);
+		}
+		for(File dir : pendingDirectories) {
+			if (!directories.containsKey(dir)) {
+				directories.put(dir, new ArrayList<Pending>());
+			}
+		}
+
+		int count = pending.size();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, directories.size())));
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(final Map.Entry<File, List<Pending>> entry : directories.entrySet()) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						commit(entry.getKey(), entry.getValue());
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch(ExecutionException e) {
+					if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+					throw new IOException(e.getCause());
+				} catch(InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		pending.clear();
+		pendingDirectories.clear();
+		index.save();
+		return count;
+	}
+
+	private void commit(File dir, List<Pending> files) throws IOException {
+		dir.mkdirs();
+		List<Path> temps = new ArrayList<Path>();
+		try {
+			for(Pending p : files) {
+				Path temp = new File(dir, "." + p.file.getName() + ".mrcg-tmp").toPath();
+				temps.add(temp);
+				FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				try {
+					if (p.content != null) {
+						ByteBuffer buffer = ByteBuffer.wrap(p.content);
+						while(buffer.hasRemaining()) {
+							out.write(buffer);
+						}
+					} else {
+						FileChannel in = FileChannel.open(p.source.toPath(), StandardOpenOption.READ);
+						try {
+							long size = in.size();
+							for(long position = 0; position < size;) {
+								position += in.transferTo(position, size - position, out);
+							}
+						} finally {
+							in.close();
+						}
+					}
+					if (fsync) {
+						out.force(true);
+					}
+				} finally {
+					out.close();
+				}
+			}
+			for(int i = 0; i < files.size(); i++) {
+				Pending p = files.get(i);
+				move(temps.get(i), p.file.toPath());
+				if (p.hash != null) {
+					index.record(p.file, p.hash);
+				}
+			}
+		} finally {
+			for(Path temp : temps) {
+				Files.deleteIfExists(temp);
+			}
+		}
+		if (fsync) {
+			FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	private void move(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static class Pending {
+		private final File file;
+		private final byte[] content;
+		private final File source;
+		private final String hash;
+
+		private Pending(File file, byte[] content, File source, String hash) {
+			this.file = file;
+			this.content = content;
+			this.source = source;
+			this.hash = hash;
+		}
+	}
+}
\ No newline at end of file
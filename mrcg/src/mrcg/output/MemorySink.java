@@ -0,0 +1,71 @@
+package mrcg.output;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Keeps all output in memory, for dry runs, tests and benchmarks.
+ */
+public class MemorySink implements OutputSink {
+	private final Map<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+
+	public boolean exists(String path) {
+		return files.containsKey(normalize(path));
+	}
+
+	public boolean write(String path, byte[] content) {
+		byte[] previous = files.put(normalize(path), content);
+		return previous == null || !Arrays.equals(previous, content);
+	}
+
+	public void copy(File source, String path) throws IOException {
+		write(path, FileUtils.readFileToByteArray(source));
+	}
+
+	public void createDirectory(String path) {}
+
+	public File getDirectory() {
+		return null;
+	}
+
+	public int close() {
+		return files.size();
+	}
+
+	/** @return everything written so far, by path */
+	public SortedMap<String, byte[]> getFiles() {
+		return Collections.unmodifiableSortedMap(new TreeMap<String, byte[]>(files));
+	}
+
+	public byte[] getFile(String path) {
+		return files.get(normalize(path));
+	}
+
+	static String normalize(String path) {
+		while(path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		return path;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package mrcg.output;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Where generated output goes.  Paths are relative to the project, separated by
+ * '/'; an absolute path names a file outside the project.  Sinks are written to
+ * from several generation stages at once and have to be thread safe.
+ */
+public interface OutputSink {
+	/** @return whether something has already been written to, or exists at, <code>path</code> */
+	public boolean exists(String path) throws IOException;
+
+	/** @return whether the content at <code>path</code> changed */
+	public boolean write(String path, byte[] content) throws IOException;
+
+	/** Copies <code>source</code> to <code>path</code> as is. */
+	public void copy(File source, String path) throws IOException;
+
+	public void createDirectory(String path) throws IOException;
+
+	/** @return the directory the output lands in, or null if it doesn't go to the file system */
+	public File getDirectory();
+
+	/** Finishes the output, nothing can be written afterwards. @return how many files were written */
+	public int close() throws IOException;
+}
\ No newline at end of file
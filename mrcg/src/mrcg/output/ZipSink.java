@@ -0,0 +1,110 @@
+package mrcg.output;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Collects output and writes it into a zip or jar archive on {@link #close()}, the
+ * entries sorted by path and dated {@link #ENTRY_TIME}, so the same output always
+ * makes the same archive however the stages writing it interleave.  Written content
+ * is kept in memory until then, copied files are read on close.  A path can only be
+ * written once.
+ */
+public class ZipSink implements OutputSink {
+	/** 1980-01-01, the earliest time a zip entry can hold. */
+	public static final long ENTRY_TIME = 315532800000L;
+
+	private final OutputStream target;
+	// path to the content, a byte[], the File to copy, or null for a directory
+	private final Map<String, Object> entries = new TreeMap<String, Object>();
+
+	public ZipSink(File archive) throws IOException {
+		this(new FileOutputStream(archive));
+	}
+
+	public ZipSink(OutputStream out) {
+		this.target = out;
+	}
+
+	public synchronized boolean exists(String path) {
+		return entries.containsKey(MemorySink.normalize(path));
+	}
+
+	public synchronized boolean write(String path, byte[] content) throws IOException {
+		return add(path, content);
+	}
+
+	public synchronized void copy(File source, String path) throws IOException {
+		add(path, source);
+	}
+
+	public synchronized void createDirectory(String path) throws IOException {
+		path = MemorySink.normalize(path);
+		if (!path.endsWith("/")) {
+			path += "/";
+		}
+		add(path, null);
+	}
+
+	public File getDirectory() {
+		return null;
+	}
+
+	public synchronized int close() throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(target));
+		try {
+			for(Map.Entry<String, Object> entry : entries.entrySet()) {
+				ZipEntry zipEntry = new ZipEntry(entry.getKey());
+				zipEntry.setTime(ENTRY_TIME);
+				out.putNextEntry(zipEntry);
+				Object content = entry.getValue();
+				if (content instanceof byte[]) {
+					out.write((byte[])content);
+				} else if (content instanceof File) {
+					InputStream in = null;
+					try {
+						in = new FileInputStream((File)content);
+						IOUtils.copy(in, out);
+					} finally {
+						IOUtils.closeQuietly(in);
+					}
+				}
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		return entries.size();
+	}
+
+	private boolean add(String path, Object content) {
+		path = MemorySink.normalize(path);
+		if (entries.containsKey(path)) return false;
+		entries.put(path, content);
+		return true;
+	}
+}
\ No newline at end of file
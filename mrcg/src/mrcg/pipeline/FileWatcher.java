@@ -0,0 +1,121 @@
+package mrcg.pipeline;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for changes to a set of files and directories.  Files are watched
+ * through their parent directory, changes to their siblings are ignored.
+ * Directories are watched with everything under them, including directories
+ * created while watching.
+ */
+public class FileWatcher implements Closeable {
+	// editors tend to save in several steps, wait for them to settle
+	private static final long SETTLE_MILLIS = 200;
+
+	private final WatchService service;
+	private final Set<Path> files = new HashSet<Path>();
+	private final Set<Path> directories = new HashSet<Path>();
+	private final Set<Path> registered = new HashSet<Path>();
+
+	public FileWatcher() throws IOException {
+		service = FileSystems.getDefault().newWatchService();
+	}
+
+	public void watch(File file) throws IOException {
+		Path path = file.toPath().toAbsolutePath().normalize();
+		if (Files.isDirectory(path)) {
+			registerTree(path);
+		} else {
+			files.add(path);
+			register(path.getParent());
+		}
+	}
+
+	/** Blocks until something watched changes. @return the paths that changed */
+	public Set<Path> awaitChanges() throws InterruptedException {
+		Set<Path> changed = new TreeSet<Path>();
+		while(changed.isEmpty()) {
+			WatchKey key = service.take();
+			do {
+				collect(key, changed);
+			} while((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+		}
+		return changed;
+	}
+
+	public void close() throws IOException {
+		service.close();
+	}
+
+	private void register(Path directory) throws IOException {
+		if (registered.add(directory)) {
+			directory.register(service,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_DELETE
+			);
+		}
+	}
+
+	private void registerTree(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.add(dir);
+				register(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void collect(WatchKey key, Set<Path> changed) {
+		Path directory = (Path)key.watchable();
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed.add(directory);
+				continue;
+			}
+			Path path = directory.resolve((Path)event.context());
+			if (directories.contains(directory) || files.contains(path)) {
+				changed.add(path);
+				if (directories.contains(directory) && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+					try {
+						registerTree(path);
+					} catch(IOException e) {
+						// gone again already, the change is reported all the same
+					}
+				}
+			}
+		}
+		key.reset();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package mrcg.pipeline;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Remembers the fingerprint of the inputs each output was last rendered from.
+ * An output whose inputs hash the same as last run, and which still exists,
+ * doesn't need to be rendered again.  Outputs are identified by their path in
+ * the {@link mrcg.output.OutputSink}.  Each line of the manifest file is a
+ * fingerprint, a tab and the output's path.
+ */
+public class Manifest {
+	private final File file;
+	private final String generatorVersion;
+	private Map<String, String> previous = new ConcurrentHashMap<String, String>();
+	private Map<String, String> current = new ConcurrentHashMap<String, String>();
+
+	public Manifest(File file, String generatorVersion) {
+		this.file = file;
+		this.generatorVersion = generatorVersion;
+	}
+
+	/** Reads the manifest left by the last run, unless it was written by another version of the generator. */
+	public void load() throws Exception {
+		previous = new ConcurrentHashMap<String, String>();
+		current = new ConcurrentHashMap<String, String>();
+		if (!file.exists()) return;
+
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			if (!generatorVersion.equals(in.readLine())) return;
+			String line;
+			while((line = in.readLine()) != null) {
+				int i = line.indexOf('\t');
+				if (i > 0) {
+					previous.put(line.substring(i+1), line.substring(0, i));
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly((Reader)in);
+		}
+	}
+
+	/** @return whether the output at <code>path</code> was last rendered from inputs with this fingerprint */
+	public boolean isCurrent(String path, String fingerprint) {
+		return fingerprint.equals(previous.get(path));
+	}
+
+	/** Records the output at <code>path</code> as rendered, or still current, in this run. */
+	public void record(String path, String fingerprint) {
+		current.put(path, fingerprint);
+	}
+
+	/** Writes this run's outputs, the ones that weren't produced this run are dropped. */
+	public void save() throws Exception {
+		file.getParentFile().mkdirs();
+		Writer out = null;
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			out.write(generatorVersion);
+			out.write('\n');
+			for(Map.Entry<String, String> entry : new TreeMap<String, String>(current).entrySet()) {
+				out.write(entry.getValue());
+				out.write('\t');
+				out.write(entry.getKey());
+				out.write('\n');
+			}
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package mrcg.pipeline;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A unit of generation work.  A stage names the resources it reads and writes
+ * (the type model, a group of output files, ...) so the {@link StageScheduler}
+ * can work out which stages are independent of each other.
+ */
+public abstract class Stage {
+	private final String name;
+	private final Set<String> reads = new HashSet<String>();
+	private final Set<String> writes = new HashSet<String>();
+	
+	public Stage(String name) {
+		this.name = name;
+	}
+	
+	public Stage reads(String...resources) {
+		reads.addAll(Arrays.asList(resources));
+		return this;
+	}
+	
+	public Stage writes(String...resources) {
+		writes.addAll(Arrays.asList(resources));
+		return this;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Set<String> getReads() {
+		return Collections.unmodifiableSet(reads);
+	}
+	
+	public Set<String> getWrites() {
+		return Collections.unmodifiableSet(writes);
+	}
+	
+	/** @return whether this stage has to wait for <code>earlier</code> to finish */
+	public boolean dependsOn(Stage earlier) {
+		return !Collections.disjoint(earlier.writes, reads) || 
+			!Collections.disjoint(earlier.writes, writes) || 
+			!Collections.disjoint(earlier.reads, writes);
+	}
+	
+	public abstract void run() throws Exception;
+	
+	public String toString() {
+		return name;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+package mrcg.pipeline;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs {@link Stage}s in the order they were added, except that a stage only
+ * waits for the earlier stages it {@link Stage#dependsOn depends on}; everything
+ * else runs concurrently.  Stages can fan per-item work out onto a shared
+ * fork/join pool with {@link #forEach}.  With a parallelism of one everything
+ * runs serially on the calling thread.
+ */
+public class StageScheduler {
+	private final int parallelism;
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private volatile ForkJoinPool pool;
+	private Telemetry telemetry = new Telemetry();
+
+	public StageScheduler(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/** Where the time taken by each stage, and each item of a {@link #forEach}, is recorded. */
+	public void setTelemetry(Telemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	public void add(Stage stage) {
+		stages.add(stage);
+	}
+
+	public boolean isParallel() {
+		return parallelism > 1;
+	}
+
+	public void execute() throws Exception {
+		if (!isParallel()) {
+			for(Stage stage : stages) {
+				run(stage);
+			}
+			return;
+		}
+
+		pool = new ForkJoinPool(parallelism);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(int i = 0; i < stages.size(); i++) {
+				final Stage stage = stages.get(i);
+				final List<Future<Void>> dependencies = new ArrayList<Future<Void>>();
+				for(int j = 0; j < i; j++) {
+					if (stage.dependsOn(stages.get(j))) {
+						dependencies.add(futures.get(j));
+					}
+				}
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						for(Future<Void> dependency : dependencies) {
+							dependency.get();
+						}
+						run(stage);
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> future : futures) {
+				await(future);
+			}
+		} finally {
+			executor.shutdownNow();
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/** Runs <code>task</code> for every item, in parallel when the scheduler is. */
+	public <T> void forEach(Collection<T> items, final Task<T> task) throws Exception {
+		final String stage = telemetry.getStage();
+		Task<T> timed = new Task<T>() {
+			public void run(T item) throws Exception {
+				Telemetry.Probe probe = telemetry.enter(stage, String.valueOf(item));
+				try {
+					task.run(item);
+				} finally {
+					telemetry.exit(probe);
+				}
+			}
+		};
+		if (pool == null) {
+			for(T item : items) {
+				timed.run(item);
+			}
+		} else {
+			try {
+				pool.invoke(new ForEachAction<T>(new ArrayList<T>(items), 0, items.size(), timed));
+			} catch(TaskException e) {
+				// the pool may hand back a copy of the exception wrapping the original
+				Throwable cause = e;
+				while(cause instanceof TaskException) {
+					cause = cause.getCause();
+				}
+				throw (Exception)cause;
+			}
+		}
+	}
+
+	private void run(Stage stage) throws Exception {
+		Telemetry.Probe probe = telemetry.enter(stage.getName(), null);
+		try {
+			stage.run();
+		} finally {
+			telemetry.exit(probe);
+		}
+	}
+
+	private void await(Future<Void> future) throws Exception {
+		try {
+			future.get();
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			// a stage that only failed because its dependency did reports the original failure
+			while(cause instanceof ExecutionException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception) throw (Exception)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw e;
+		}
+	}
+
+	public interface Task<T> {
+		public void run(T item) throws Exception;
+	}
+
+	private static class ForEachAction<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<T> items;
+		private final int from;
+		private final int to;
+		private final Task<T> task;
+
+		private ForEachAction(List<T> items, int from, int to, Task<T> task) {
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.task = task;
+		}
+
+		protected void compute() {
+			if (to - from <= 1) {
+				if (from < to) {
+					try {
+						task.run(items.get(from));
+					} catch(RuntimeException e) {
+						throw e;
+					} catch(Exception e) {
+						throw new TaskException(e);
+					}
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ForEachAction<T>(items, from, middle, task), new ForEachAction<T>(items, middle, to, task));
+			}
+		}
+	}
+
+	private static class TaskException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private TaskException(Exception cause) {
+			super(cause);
+		}
+	}
+}
\ No newline at end of file
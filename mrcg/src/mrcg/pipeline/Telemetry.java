@@ -0,0 +1,321 @@
+package mrcg.pipeline;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Records how long each stage, each item a stage fans out over and each output
+ * file took, how much was rendered, whether writing was skipped and roughly how
+ * much was allocated doing it.  Allocation is measured per thread, so work a
+ * stage hands to other threads is counted through its items.  The records can
+ * be written as JSON or CSV and summarised at the end of a run.
+ */
+public class Telemetry {
+	private static final com.sun.management.ThreadMXBean THREADS = getThreadMXBean();
+
+	private final Queue<Record> stages = new ConcurrentLinkedQueue<Record>();
+	private final Queue<Record> items = new ConcurrentLinkedQueue<Record>();
+	private final Queue<Record> files = new ConcurrentLinkedQueue<Record>();
+	private final ThreadLocal<Probe> current = new ThreadLocal<Probe>();
+
+	/** Starts timing work on the current thread. */
+	public Probe start() {
+		Probe probe = new Probe();
+		Probe context = current.get();
+		if (context != null) {
+			probe.stage = context.stage;
+			probe.item = context.item;
+		}
+		return probe;
+	}
+
+	/** Starts timing a stage, or an item of it; files written until {@link #exit} are attributed to it. */
+	public Probe enter(String stage, String item) {
+		Probe probe = start();
+		probe.stage = stage;
+		probe.item = item;
+		probe.previous = current.get();
+		current.set(probe);
+		return probe;
+	}
+
+	public void exit(Probe probe) {
+		current.set(probe.previous);
+		Record record = probe.stop();
+		if (probe.item == null) {
+			stages.add(record);
+		} else {
+			items.add(record);
+		}
+	}
+
+	/** The stage running on this thread, null outside of one. */
+	public String getStage() {
+		Probe probe = current.get();
+		return (probe == null)?null:probe.stage;
+	}
+
+	/**
+	 * Records an output file.
+	 * @param probe started before rendering, null when nothing was rendered
+	 * @param skipped whether the file was left as it was
+	 */
+	public void file(Probe probe, String path, String template, long bytes, boolean skipped) {
+		Record record = (probe == null)?start().stop():probe.stop();
+		record.path = path;
+		record.template = template;
+		record.bytes = bytes;
+		record.skipped = skipped;
+		files.add(record);
+	}
+
+	public void writeJson(File file) throws IOException {
+		Writer out = open(file);
+		try {
+			out.write("{\n");
+			writeJson(out, "stages", stages, false);
+			writeJson(out, "items", items, false);
+			writeJson(out, "files", files, true);
+			out.write("}\n");
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	public void writeCsv(File file) throws IOException {
+		Writer out = open(file);
+		try {
+			out.write("kind,stage,item,path,template,millis,bytes,allocated,skipped\n");
+			writeCsv(out, "stage", stages);
+			writeCsv(out, "item", items);
+			writeCsv(out, "file", files);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/** Prints each stage's time with the median and 99th percentile of its items, then the slowest beans and templates. */
+	public void printSummary(PrintStream out, int top) {
+		Map<String, List<Long>> stageItems = new LinkedHashMap<String, List<Long>>();
+		Map<String, Long> stageAllocated = new LinkedHashMap<String, Long>();
+		Map<String, Long> itemTotals = new LinkedHashMap<String, Long>();
+		for(Record record : items) {
+			add(stageItems, record.stage, record.nanos);
+			increment(stageAllocated, record.stage, Math.max(0, record.allocated));
+			increment(itemTotals, record.item, record.nanos);
+		}
+
+		out.println(String.format("%-24s %10s %7s %9s %9s %12s", "stage", "ms", "items", "p50 ms", "p99 ms", "allocated"));
+		for(Record stage : sort(new ArrayList<Record>(stages))) {
+			List<Long> durations = stageItems.containsKey(stage.stage)?stageItems.get(stage.stage):Collections.<Long>emptyList();
+			Collections.sort(durations);
+			// allocation on other threads is only seen through the items
+			long allocated = Math.max(stage.allocated, stageAllocated.containsKey(stage.stage)?stageAllocated.get(stage.stage):0);
+			out.println(String.format("%-24s %10.1f %7d %9.2f %9.2f %12s",
+				stage.stage, millis(stage.nanos), durations.size(),
+				millis(percentile(durations, 50)), millis(percentile(durations, 99)), bytes(allocated)
+			));
+		}
+
+		Map<String, Long> templateTotals = new LinkedHashMap<String, Long>();
+		int written = 0;
+		int skipped = 0;
+		long rendered = 0;
+		for(Record record : files) {
+			if (record.template != null) {
+				increment(templateTotals, record.template, record.nanos);
+			}
+			if (record.skipped) skipped++; else written++;
+			rendered += record.bytes;
+		}
+
+		printTop(out, "slowest beans", itemTotals, top);
+		printTop(out, "slowest templates", templateTotals, top);
+		out.println(written + " files written, " + skipped + " skipped, " + bytes(rendered) + " rendered");
+	}
+
+	private void printTop(PrintStream out, String title, Map<String, Long> totals, int top) {
+		if (totals.isEmpty()) return;
+		List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(totals.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+				return b.getValue().compareTo(a.getValue());
+			}
+		});
+		out.println(title + ":");
+		for(Map.Entry<String, Long> entry : entries.subList(0, Math.min(top, entries.size()))) {
+			out.println(String.format("  %10.1f ms  %s", millis(entry.getValue()), entry.getKey()));
+		}
+	}
+
+	private static List<Record> sort(List<Record> records) {
+		Collections.sort(records, new Comparator<Record>() {
+			public int compare(Record a, Record b) {
+				return Long.compare(a.started, b.started);
+			}
+		});
+		return records;
+	}
+
+	private static long percentile(List<Long> sorted, int percentile) {
+		if (sorted.isEmpty()) return 0;
+		int rank = (int)Math.ceil(percentile / 100.0 * sorted.size());
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	private static void add(Map<String, List<Long>> map, String key, long value) {
+		List<Long> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<Long>();
+			map.put(key, list);
+		}
+		list.add(value);
+	}
+
+	private static void increment(Map<String, Long> map, String key, long value) {
+		Long total = map.get(key);
+		map.put(key, (total == null)?value:total + value);
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+	private static String bytes(long bytes) {
+		if (bytes < 0) return "n/a";
+		if (bytes < 1024 * 1024) return (bytes / 1024) + " KB";
+		return (bytes / (1024 * 1024)) + " MB";
+	}
+
+	private static Writer open(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	private static void writeJson(Writer out, String name, Queue<Record> records, boolean last) throws IOException {
+		out.write("  \"" + name + "\": [");
+		boolean first = true;
+		for(Record record : sort(new ArrayList<Record>(records))) {
+			out.write(first?"\n":",\n");
+			first = false;
+			out.write("    {\"stage\": " + json(record.stage));
+			if (record.item != null) out.write(", \"item\": " + json(record.item));
+			if (record.path != null) {
+				out.write(", \"path\": " + json(record.path) + ", \"template\": " + json(record.template));
+				out.write(", \"bytes\": " + record.bytes + ", \"skipped\": " + record.skipped);
+			}
+			out.write(", \"millis\": " + millis(record.nanos) + ", \"allocated\": " + record.allocated + "}");
+		}
+		out.write(first?"]":"\n  ]");
+		out.write(last?"\n":",\n");
+	}
+
+	private static void writeCsv(Writer out, String kind, Queue<Record> records) throws IOException {
+		for(Record record : sort(new ArrayList<Record>(records))) {
+			out.write(kind + "," + csv(record.stage) + "," + csv(record.item) + "," + csv(record.path) + "," + csv(record.template) + "," +
+				millis(record.nanos) + "," + record.bytes + "," + record.allocated + "," + record.skipped + "\n");
+		}
+	}
+
+	private static String json(String s) {
+		if (s == null) return "null";
+		StringBuilder b = new StringBuilder("\"");
+		for(char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if (c < ' ') {
+				b.append(String.format("\\u%04x", (int)c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+
+	private static String csv(String s) {
+		if (s == null) return "";
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0) return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	private static long allocated() {
+		return (THREADS == null)?-1:THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadMXBean() {
+		try {
+			java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (threads instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean)threads;
+				if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+					return sun;
+				}
+			}
+		} catch(LinkageError e) {
+			// not a HotSpot VM
+		}
+		return null;
+	}
+
+	/** Work being timed, see {@link Telemetry#start}. */
+	public static class Probe {
+		private final long started = System.nanoTime();
+		private final long allocated = allocated();
+		private String stage;
+		private String item;
+		private Probe previous;
+
+		private Record stop() {
+			Record record = new Record();
+			record.stage = stage;
+			record.item = item;
+			record.started = started;
+			record.nanos = System.nanoTime() - started;
+			long now = allocated();
+			record.allocated = (allocated < 0 || now < 0)?-1:now - allocated;
+			return record;
+		}
+	}
+
+	private static class Record {
+		private String stage;
+		private String item;
+		private String path;
+		private String template;
+		private long started;
+		private long nanos;
+		private long bytes;
+		private long allocated;
+		private boolean skipped;
+	}
+}
\ No newline at end of file
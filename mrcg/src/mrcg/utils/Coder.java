@@ -15,25 +15,19 @@ package mrcg.utils;
  */
 
 public class Coder {
-	private StringBuilder b = new StringBuilder();
+	private Emitter b = new Emitter(256);
 	
 	public Coder print(int indent, String text) {
-		doIndents(indent);
-		b.append(text);
+		b.indent(indent).print(text);
 		return this;
 	}
 	
 	public Coder println(int indent, String text) {
-		doIndents(indent);
-		b.append(text).append('\n');
+		b.indent(indent).println(text);
 		return this;
 	}
 	
 	public String toString() {
 		return b.toString();
 	}
-	
-	private void doIndents(int indents) {
-		for(int i = 0; i < indents; i++) b.append('\t');
-	}	
 }
\ No newline at end of file
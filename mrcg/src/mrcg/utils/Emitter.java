@@ -0,0 +1,134 @@
+package mrcg.utils;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * An unsynchronized, growable character buffer to render source into, a lighter
+ * PrintWriter over a StringWriter.  Lines end with '\n'.  An emitter can be
+ * {@link #reset} and used again, keeping the space it has grown to.
+ */
+public class Emitter {
+	private static final String[] INDENTS = new String[16];
+	static {
+		StringBuilder b = new StringBuilder();
+		for(int i = 0; i < INDENTS.length; i++) {
+			INDENTS[i] = b.toString();
+			b.append('\t');
+		}
+	}
+
+	private char[] chars;
+	private int length;
+	private byte[] bytes = new byte[0];
+
+	public Emitter() {
+		this(1024);
+	}
+
+	public Emitter(int capacity) {
+		chars = new char[Math.max(capacity, 16)];
+	}
+
+	/** @return <code>count</code> tabs */
+	public static String indentation(int count) {
+		if (count < INDENTS.length) return INDENTS[count];
+		StringBuilder b = new StringBuilder(INDENTS[INDENTS.length - 1]);
+		for(int i = INDENTS.length - 1; i < count; i++) b.append('\t');
+		return b.toString();
+	}
+
+	public Emitter indent(int count) {
+		return print(indentation(count));
+	}
+
+	public Emitter print(String text) {
+		if (text == null) text = "null";
+		int n = text.length();
+		ensure(n);
+		text.getChars(0, n, chars, length);
+		length += n;
+		return this;
+	}
+
+	public Emitter print(Object value) {
+		return print(String.valueOf(value));
+	}
+
+	public Emitter print(char c) {
+		ensure(1);
+		chars[length++] = c;
+		return this;
+	}
+
+	public Emitter println() {
+		return print('\n');
+	}
+
+	public Emitter println(String text) {
+		return print(text).print('\n');
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/** Empties the emitter, keeping its buffer. */
+	public Emitter reset() {
+		length = 0;
+		return this;
+	}
+
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+	/** @return what's been emitted, encoded as UTF-8 */
+	public byte[] toBytes() {
+		if (bytes.length < length * 3) {
+			bytes = new byte[Math.max(length * 3, bytes.length * 2)];
+		}
+		int n = 0;
+		for(int i = 0; i < length; i++) {
+			char c = chars[i];
+			if (c < 0x80) {
+				bytes[n++] = (byte)c;
+			} else if (c < 0x800) {
+				bytes[n++] = (byte)(0xc0 | (c >> 6));
+				bytes[n++] = (byte)(0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+				int cp = Character.toCodePoint(c, chars[++i]);
+				bytes[n++] = (byte)(0xf0 | (cp >> 18));
+				bytes[n++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+				bytes[n++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+				bytes[n++] = (byte)(0x80 | (cp & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				bytes[n++] = (byte)'?';
+			} else {
+				bytes[n++] = (byte)(0xe0 | (c >> 12));
+				bytes[n++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+				bytes[n++] = (byte)(0x80 | (c & 0x3f));
+			}
+		}
+		return Arrays.copyOf(bytes, n);
+	}
+
+	private void ensure(int more) {
+		if (length + more > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(length + more, chars.length * 2));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package mrcg.utils;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds a 128 bit hash over strings and parsed YAML nodes.  Maps are hashed in
+ * key order so two parses of the same definition always give the same fingerprint.
+ */
+public class Fingerprint {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+
+	public Fingerprint() {
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String of(byte[] bytes) {
+		Fingerprint fingerprint = new Fingerprint();
+		fingerprint.digest.update(bytes);
+		return fingerprint.getHash();
+	}
+
+	public static String of(String...values) {
+		Fingerprint fingerprint = new Fingerprint();
+		for(String value : values) {
+			fingerprint.add(value);
+		}
+		return fingerprint.getHash();
+	}
+
+	public Fingerprint add(String value) {
+		if (value != null) {
+			digest.update(value.getBytes(UTF8));
+		}
+		digest.update((byte)0);
+		return this;
+	}
+
+	public Fingerprint addNode(Object node) {
+		if (node instanceof Map) {
+			add("{");
+			Map<Object, Object> sorted = new TreeMap<Object, Object>();
+			for(Map.Entry<?, ?> entry : ((Map<?, ?>)node).entrySet()) {
+				sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+			}
+			for(Map.Entry<Object, Object> entry : sorted.entrySet()) {
+				add(entry.getKey().toString());
+				addNode(entry.getValue());
+			}
+			add("}");
+		} else if (node instanceof List) {
+			add("[");
+			for(Object item : (List<?>)node) {
+				addNode(item);
+			}
+			add("]");
+		} else {
+			add(node == null?null:node.toString());
+		}
+		return this;
+	}
+
+	/** Completes the hash, nothing can be added to the fingerprint afterwards. */
+	public String getHash() {
+		byte[] bytes = digest.digest();
+		char[] chars = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
\ No newline at end of file
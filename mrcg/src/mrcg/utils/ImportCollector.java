@@ -0,0 +1,68 @@
+package mrcg.utils;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mrcg.domain.ImportsRequired;
+
+/**
+ * Gathers the types a class refers to in a single walk over its model, into one
+ * sorted set, so the import statements come out in the same order every time.
+ */
+public class ImportCollector {
+	private final Set<String> types = new TreeSet<String>();
+
+	public ImportCollector add(String type) {
+		if (type != null) {
+			types.add(type);
+		}
+		return this;
+	}
+
+	public ImportCollector add(ImportsRequired required) {
+		if (required != null) {
+			required.collectImports(this);
+		}
+		return this;
+	}
+
+	public ImportCollector addAll(Iterable<? extends ImportsRequired> required) {
+		for(ImportsRequired r : required) {
+			add(r);
+		}
+		return this;
+	}
+
+	/** Every type collected, including primitives and java.lang. */
+	public Set<String> getTypes() {
+		return Collections.unmodifiableSet(types);
+	}
+
+	/** @return the types that need an import statement in a class in <code>pkg</code>, sorted */
+	public List<String> getImports(String pkg) {
+		List<String> imports = new ArrayList<String>();
+		for(String type : types) {
+			if (ImportUtils.needsImportStatement(type) && !pkg.equals(ImportUtils.getPackage(type))) {
+				imports.add(type);
+			}
+		}
+		return imports;
+	}
+}
\ No newline at end of file
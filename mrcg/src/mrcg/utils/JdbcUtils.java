@@ -0,0 +1,167 @@
+package mrcg.utils;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mrcg.domain.DBType;
+import mrcg.domain.JavaClass;
+import mrcg.domain.JavaField;
+import mrcg.domain.JavaGetter;
+import mrcg.domain.JavaSetter;
+import mrcg.domain.JavaType;
+
+/**
+ * Builds the code generated data access classes use to read and write beans over
+ * plain JDBC, column by column in the order of the bean's table.
+ */
+public class JdbcUtils {
+	public static final JavaType SQL_EXCEPTION = JavaType.of("java.sql.SQLException");
+	public static final JavaType LOCAL_DATE = JavaType.of("java.time.LocalDate");
+	public static final JavaType LOCAL_TIME = JavaType.of("java.time.LocalTime");
+
+	/** The fields a bean keeps in its table, in the order of the table's columns. */
+	public static List<JavaField> getColumns(JavaClass jc) {
+		List<JavaField> columns = new ArrayList<JavaField>();
+		for(JavaField jf : jc.getInstanceFields()) {
+			if (jf.isDatabaseField()) {
+				columns.add(jf);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * @param delimiter quotes each column, as the database's script does
+	 * @return the columns of the fields, e.g. <code>id, name, customer_id</code>
+	 */
+	public static String getColumnList(List<JavaField> fields, String delimiter) {
+		StringBuilder b = new StringBuilder();
+		for(JavaField jf : fields) {
+			if (b.length() > 0) b.append(", ");
+			b.append(delimiter).append(jf.getDBField()).append(delimiter);
+		}
+		return b.toString();
+	}
+
+	/** @return the columns of the fields as assignments, e.g. <code>name = ?, customer_id = ?</code> */
+	public static String getAssignmentList(List<JavaField> fields, String delimiter) {
+		StringBuilder b = new StringBuilder();
+		for(JavaField jf : fields) {
+			if (b.length() > 0) b.append(", ");
+			b.append(delimiter).append(jf.getDBField()).append(delimiter).append(" = ?");
+		}
+		return b.toString();
+	}
+
+	/** @return <code>count</code> comma separated parameters, e.g. <code>?, ?, ?</code> */
+	public static String getParameterList(int count) {
+		StringBuilder b = new StringBuilder();
+		for(int i = 0; i < count; i++) {
+			if (i > 0) b.append(", ");
+			b.append('?');
+		}
+		return b.toString();
+	}
+
+	/** Encrypted fields are decrypted by the logic facade, beans with any are left to it. */
+	public static boolean isMappable(JavaClass jc) {
+		for(JavaField jf : getColumns(jc)) {
+			if (jf.isEncrypted()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the statements setting <code>jf</code> on <code>bean</code> from the column at
+	 * <code>index</code> of <code>resultSet</code>, with the getter for the column's type
+	 * @param local a name the statements may declare a variable by
+	 */
+	public static String read(JavaField jf, String bean, String resultSet, String index, String local) {
+		String set = bean + "." + JavaSetter.getSetterName(jf);
+		JavaClass references = jf.getReferences();
+		if (references != null && references.isEnum()) {
+			return "String " + local + " = " + resultSet + ".getString(" + index + ");\n\t\t" +
+				set + "((" + local + " == null)?null:" + references.getName() + ".valueOf(" + local + "));";
+		}
+		switch(jf.getDbType()) {
+			case Varchar:
+			case Text:
+				return set + "(" + resultSet + ".getString(" + index + "));";
+			case Binary:
+				return set + "(" + resultSet + ".getBytes(" + index + "));";
+			case JustDate:
+				return "LocalDate " + local + " = " + resultSet + ".getObject(" + index + ", LocalDate.class);\n\t\t" +
+					set + "((" + local + " == null)?null:" + local + ".atStartOfDay());";
+			case Time:
+				return "LocalTime " + local + " = " + resultSet + ".getObject(" + index + ", LocalTime.class);\n\t\t" +
+					set + "((" + local + " == null)?null:" + local + ".atDate(LocalDate.ofEpochDay(0)));";
+			default:
+				// the boxed type, unlike getLong() and the like a null column stays null
+				return set + "(" + resultSet + ".getObject(" + index + ", " + jf.getType().getJustClassName() + ".class));";
+		}
+	}
+
+	/**
+	 * @return the statement setting the parameter at <code>index</code> of <code>statement</code>
+	 * to <code>jf</code> of <code>bean</code>, the counterpart of {@link #read}
+	 */
+	public static String write(JavaField jf, String bean, String statement, String index) {
+		switch(jf.getDbType()) {
+			case Varchar:
+			case Text:
+				return statement + ".setString(" + index + ", " + getValue(jf, bean) + ");";
+			case Binary:
+				return statement + ".setBytes(" + index + ", " + getValue(jf, bean) + ");";
+			default:
+				return statement + ".setObject(" + index + ", " + getValue(jf, bean) + ");";
+		}
+	}
+
+	/** @return the value of <code>jf</code> of <code>bean</code> as the column's type, e.g. a LocalDate for a date */
+	public static String getValue(JavaField jf, String bean) {
+		String get = bean + "." + JavaGetter.getGetterName(jf) + "()";
+		JavaClass references = jf.getReferences();
+		if (references != null && references.isEnum()) {
+			return "(" + get + " == null)?null:" + get + ".name()";
+		}
+		switch(jf.getDbType()) {
+			case JustDate:
+				return "(" + get + " == null)?null:" + get + ".toLocalDate()";
+			case Time:
+				return "(" + get + " == null)?null:" + get + ".toLocalTime()";
+			default:
+				return get;
+		}
+	}
+
+	/** @return the types the statements {@link #read} builds for <code>jf</code> refer to */
+	public static List<JavaType> getReadTypes(JavaField jf) {
+		List<JavaType> types = new ArrayList<JavaType>();
+		JavaClass references = jf.getReferences();
+		if (references != null && references.isEnum()) {
+			types.add(references.getJavaType());
+		} else if (jf.getDbType() == DBType.JustDate) {
+			types.add(LOCAL_DATE);
+		} else if (jf.getDbType() == DBType.Time) {
+			types.add(LOCAL_DATE);
+			types.add(LOCAL_TIME);
+		} else {
+			types.add(jf.getType());
+		}
+		return types;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+package mrcg.utils;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * Parses each Velocity template once and hands out the compiled {@link Template}.
+ * File templates are keyed by path and re-parsed only when their modification
+ * time or size changes; inline templates are keyed by their source, the most recently
+ * used {@link #INLINE_TEMPLATES} of them kept.  Templates are read as UTF-8.  Compiled
+ * templates are immutable once initialized, so a registry may be shared between threads.
+ */
+public class TemplateRegistry {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	public static final int INLINE_TEMPLATES = 256;
+
+	private final RuntimeInstance runtime = new RuntimeInstance();
+	private final ConcurrentMap<String, CachedTemplate> files = new ConcurrentHashMap<String, CachedTemplate>();
+	// least recently used first, so a watch or batch process merging ever new sources doesn't keep them all
+	private final Map<String, Template> inline = Collections.synchronizedMap(new LinkedHashMap<String, Template>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+			return size() > INLINE_TEMPLATES;
+		}
+	});
+
+	public TemplateRegistry() {
+		try {
+			runtime.init();
+		} catch(Exception e) {
+			throw new RuntimeException("Unable to initialize the template engine", e);
+		}
+	}
+
+	public Template getTemplate(File file) throws Exception {
+		return getCachedTemplate(file).template;
+	}
+
+	/** @return a hash of the template's source, changes whenever the template does */
+	public String getFingerprint(File file) throws Exception {
+		return getCachedTemplate(file).fingerprint;
+	}
+
+	public Template getTemplate(String source) throws Exception {
+		Template template = inline.get(source);
+		if (template == null) {
+			template = parse(new StringReader(source), "");
+			inline.put(source, template);
+		}
+		return template;
+	}
+
+	public String merge(File file, Map<String, Object> map) throws Exception {
+		return merge(getTemplate(file), map);
+	}
+
+	public String merge(String source, Map<String, Object> map) throws Exception {
+		return merge(getTemplate(source), map);
+	}
+
+	private String merge(Template template, Map<String, Object> map) {
+		StringWriter writer = new StringWriter();
+		template.merge(new VelocityContext(map), writer);
+		return writer.toString();
+	}
+
+	private CachedTemplate getCachedTemplate(File file) throws Exception {
+		String path = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		long length = file.length();
+		CachedTemplate cached = files.get(path);
+		if (cached == null || cached.lastModified != lastModified || cached.length != length) {
+			byte[] source;
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				source = IOUtils.toByteArray(in);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+			Template template = parse(new InputStreamReader(new ByteArrayInputStream(source), UTF8), path);
+			cached = new CachedTemplate(template, Fingerprint.of(source), lastModified, length);
+			files.put(path, cached);
+		}
+		return cached;
+	}
+
+	private Template parse(Reader reader, String name) throws Exception {
+		SimpleNode node = runtime.parse(reader, name);
+		Template template = new Template();
+		template.setName(name);
+		template.setRuntimeServices(runtime);
+		template.setData(node);
+		template.initDocument();
+		return template;
+	}
+
+	private static class CachedTemplate {
+		private final Template template;
+		private final String fingerprint;
+		private final long lastModified;
+		private final long length;
+
+		private CachedTemplate(Template template, String fingerprint, long lastModified, long length) {
+			this.template = template;
+			this.fingerprint = fingerprint;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
\ No newline at end of file
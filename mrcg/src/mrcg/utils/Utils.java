@@ -14,16 +14,17 @@ package mrcg.utils;
  * limitations under the License.
  */
 
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 
 import mrcg.domain.JavaClass;
 import mrcg.domain.JavaField;
@@ -216,25 +217,51 @@ public class Utils {
 		return b.toString();
 	}
 
-	public static String execute(String template, Map<String, Object> map) throws Exception {
-		VelocityContext context = new VelocityContext(map);
-		StringWriter writer = new StringWriter();
-		if (Velocity.evaluate(context, writer, "", template)) {
-			return writer.getBuffer().toString();
-		} else {
-			throw new RuntimeException("Un unspecified error occured while transforming template");
+	/**
+	 * Orders types so each comes after the types it references, ties and cycles
+	 * broken by name, so the same model always comes out in the same order.
+	 */
+	public static Map<String, JavaClass> orderByReference(Map<String, JavaClass> types) {
+		Map<String, Integer> unresolved = new HashMap<String, Integer>();
+		Map<String, List<String>> referencedBy = new HashMap<String, List<String>>();
+		for(Map.Entry<String, JavaClass> entry : types.entrySet()) {
+			Set<String> references = new HashSet<String>();
+			for(JavaField jf : entry.getValue().getFields()) {
+				JavaClass ref = jf.getReferences();
+				if (ref != null && ref != entry.getValue() && types.containsKey(ref.getName()) && references.add(ref.getName())) {
+					List<String> names = referencedBy.get(ref.getName());
+					if (names == null) {
+						names = new ArrayList<String>();
+						referencedBy.put(ref.getName(), names);
+					}
+					names.add(entry.getKey());
+				}
+			}
+			unresolved.put(entry.getKey(), references.size());
 		}
-	}
-	
-	public static String execute(String template, Object...keysAndValues) throws Exception {
-		return execute(template, toMap(keysAndValues));
-	}
-	
-	private static Map<String, Object> toMap(Object...keysAndValues) {
-		Map<String, Object> map = new HashMap<String, Object>();
-		for(int i = 0; i < keysAndValues.length; i+=2) {
-			map.put((String)keysAndValues[i], keysAndValues[i+1]);
+
+		TreeSet<String> remaining = new TreeSet<String>(types.keySet());
+		TreeSet<String> ready = new TreeSet<String>();
+		for(String name : remaining) {
+			if (unresolved.get(name) == 0) ready.add(name);
+		}
+
+		Map<String, JavaClass> ordered = new LinkedHashMap<String, JavaClass>();
+		while(!remaining.isEmpty()) {
+			// only a cycle leaves nothing ready
+			String next = ready.isEmpty()?remaining.first():ready.first();
+			ready.remove(next);
+			remaining.remove(next);
+			ordered.put(next, types.get(next));
+			List<String> names = referencedBy.get(next);
+			if (names != null) {
+				for(String name : names) {
+					int count = unresolved.get(name) - 1;
+					unresolved.put(name, count);
+					if (count == 0 && remaining.contains(name)) ready.add(name);
+				}
+			}
 		}
-		return map;
+		return ordered;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package mrcg.db;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mrcg.domain.DBType;
+import mrcg.domain.JavaClass;
+import mrcg.domain.JavaEnum;
+import mrcg.domain.JavaEnumValue;
+import mrcg.domain.JavaField;
+import mrcg.domain.JavaType;
+
+import org.junit.Test;
+
+/**
+ * Runs the scripts both dialects build through an in-memory H2 database in that
+ * dialect's compatibility mode.  H2 has no CREATE DATABASE, so the scripters here
+ * start with a <code>\c</code> into a fresh in-memory database instead.
+ */
+public class SchemaApplierTest {
+	private static int databases;
+
+	@Test
+	public void testSplit() {
+		List<String> statements = SchemaApplier.split(
+				"\\c shop;\n" +
+				"-- a comment; with a semicolon\n" +
+				"INSERT INTO status (code, name) VALUES ('A;B', 'it''s');\n" +
+				"CREATE TABLE `a;b` (\"c;d\" int);;\n" +
+				"  \\c other\n" +
+				"COMMIT");
+		assertEquals(Arrays.asList(
+				"\\c shop",
+				"INSERT INTO status (code, name) VALUES ('A;B', 'it''s')",
+				"CREATE TABLE `a;b` (\"c;d\" int)",
+				"\\c other",
+				"COMMIT"), statements);
+	}
+
+	@Test
+	public void testBatching() throws SQLException {
+		String database = database();
+		SchemaApplier applier = applier("");
+		applier.setBatchSize(2);
+		final List<String> executed = new ArrayList<String>();
+		applier.setListener(new SchemaApplier.Listener() {
+			public void executed(String sql, int done, int total, long millis) {
+				executed.add(sql + " " + done + "/" + total);
+			}
+		});
+		assertEquals(7, applier.apply(
+				"\\c " + database + ";\n" +
+				"CREATE TABLE t (n int);\n" +
+				"INSERT INTO t VALUES (1);\n" +
+				"INSERT INTO t VALUES (2);\n" +
+				"INSERT INTO t VALUES (3);\n" +
+				"INSERT INTO t VALUES (4);\n" +
+				"INSERT INTO t VALUES (5);\n"));
+		assertEquals(Arrays.asList(
+				"\\c " + database + " 1/7",
+				"CREATE TABLE t (n int) 2/7",
+				"2 inserts 4/7",
+				"2 inserts 6/7",
+				"INSERT INTO t VALUES (5) 7/7"), executed);
+		assertEquals(5, count(database, "SELECT COUNT(*) FROM t"));
+	}
+
+	@Test
+	public void testReconnect() throws SQLException {
+		String one = database();
+		String two = database();
+		applier("").apply(
+				"\\c " + one + ";\n" +
+				"CREATE TABLE a (n int);\n" +
+				"\\c " + two + ";\n" +
+				"CREATE TABLE b (n int);\n");
+		assertEquals(1, count(one, "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'A'"));
+		assertEquals(0, count(one, "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'B'"));
+		assertEquals(1, count(two, "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'B'"));
+	}
+
+	@Test
+	public void testBootstrapDatabase() throws SQLException {
+		String database = database();
+		try {
+			applier("").apply("CREATE TABLE t (n int);\n");
+			fail("ran without a database to run in");
+		} catch(SQLException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("bootstrap"));
+		}
+		SchemaApplier applier = applier("");
+		applier.setBootstrapDatabase(database);
+		applier.apply("CREATE TABLE t (n int);\n");
+		assertEquals(0, count(database, "SELECT COUNT(*) FROM t"));
+	}
+
+	@Test
+	public void testRollback() throws SQLException {
+		String database = database();
+		applier("").apply("\\c " + database + ";\nCREATE TABLE t (n int not null);\n");
+		try {
+			applier("").apply(
+					"\\c " + database + ";\n" +
+					"START TRANSACTION;\n" +
+					"INSERT INTO t VALUES (1);\n" +
+					"UPDATE t SET n = null;\n" +
+					"COMMIT;\n");
+			fail("the update can't succeed");
+		} catch(SQLException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("UPDATE t SET n = null"));
+		}
+		assertEquals(0, count(database, "SELECT COUNT(*) FROM t"));
+	}
+
+	@Test
+	public void testReconnectWithTransactionOpen() throws SQLException {
+		String database = database();
+		applier("").apply("\\c " + database + ";\nCREATE TABLE t (n int);\n");
+		try {
+			applier("").apply(
+					"\\c " + database + ";\n" +
+					"START TRANSACTION;\n" +
+					"INSERT INTO t VALUES (1);\n" +
+					"\\c " + database() + ";\n");
+			fail("reconnected with the insert pending");
+		} catch(SQLException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("transaction open"));
+		}
+		assertEquals(0, count(database, "SELECT COUNT(*) FROM t"));
+	}
+
+	@Test
+	public void testMySql() throws SQLException {
+		testDialect("MySQL", new MySqlScriptifier() {
+			protected void start(StringBuilder b, String name) {
+				b.append("\\c " + name + ";\n");
+				b.append("SET FOREIGN_KEY_CHECKS = 0;\n");
+				b.append("START TRANSACTION;\n");
+			}
+
+			protected void startMigration(StringBuilder b, String name) {
+				start(b, name);
+			}
+		});
+	}
+
+	@Test
+	public void testPostgreSql() throws SQLException {
+		testDialect("PostgreSQL", new PostgreSqlScriptifier() {
+			protected void start(StringBuilder b, String name) {
+				startMigration(b, name);
+			}
+		});
+	}
+
+	private void testDialect(String mode, AbstractDBScripter scripter) throws SQLException {
+		String database = database();
+		Map<String, JavaClass> types = types(false);
+		SchemaApplier applier = applier(";MODE=" + mode);
+		applier.apply(scripter.buildScript(database, types));
+		execute(database, "INSERT INTO customer (name, status_code) VALUES ('Ann', 'O')");
+		execute(database, "INSERT INTO purchase (customer_id, total) VALUES (1, 12.50)");
+		assertEquals(2, count(database, "SELECT COUNT(*) FROM status"));
+
+		Map<String, JavaClass> changed = types(true);
+		String migration = scripter.buildMigration(database, scripter.snapshot(types), scripter.snapshot(changed));
+		assertNotNull(migration);
+		applier.apply(migration);
+		assertEquals(3, count(database, "SELECT COUNT(*) FROM status"));
+		assertEquals(1, count(database, "SELECT COUNT(*) FROM purchase WHERE note IS NULL"));
+		assertEquals(1, count(database, "SELECT COUNT(*) FROM information_schema.indexes WHERE index_name = 'PURCHASE_NOTE_INDEX'"));
+		assertFalse(scripter.buildMigration(database, scripter.snapshot(changed), scripter.snapshot(changed)).contains("ALTER TABLE"));
+	}
+
+	/**
+	 * A customer with a status and their purchases, <code>changed</code> adds a note and
+	 * a status.  One foreign key per table, H2 takes one ADD in an ALTER TABLE.
+	 */
+	private static Map<String, JavaClass> types(boolean changed) {
+		JavaEnum status = new JavaEnum("com.acme.bean.Status");
+		status.setMaxCodeLength(1);
+		status.addField(field(JavaType.STRING, "name", DBType.Varchar, 20));
+		status.addValue(new JavaEnumValue("O", "Open"));
+		status.addValue(new JavaEnumValue("S", "Shipped"));
+
+		JavaClass customer = new JavaClass("com.acme.bean", "Customer");
+		customer.addField(id());
+		JavaField name = field(JavaType.STRING, "name", DBType.Varchar, 40);
+		name.setRequired(true);
+		name.setUnique(true);
+		customer.addField(name);
+		JavaField statusCode = field(JavaType.STRING, "statusCode", DBType.Varchar, 1);
+		statusCode.setReferences(status);
+		customer.addField(statusCode);
+
+		JavaClass purchase = new JavaClass("com.acme.bean", "Purchase");
+		purchase.addField(id());
+		JavaField customerId = field(JavaType.LONG, "customerId", DBType.Long, 0);
+		customerId.setReferences(customer);
+		purchase.addField(customerId);
+		JavaField total = field(JavaType.STRING, "total", DBType.Double, 2);
+		total.setMinLength(10);
+		purchase.addField(total);
+
+		if (changed) {
+			status.addValue(new JavaEnumValue("C", "Cancelled"));
+			JavaField note = field(JavaType.STRING, "note", DBType.Text, 0);
+			note.setIndexed(true);
+			purchase.addField(note);
+		}
+
+		Map<String, JavaClass> types = new LinkedHashMap<String, JavaClass>();
+		types.put("Status", status);
+		types.put("Customer", customer);
+		types.put("Purchase", purchase);
+		return types;
+	}
+
+	private static JavaField id() {
+		JavaField id = field(JavaType.LONG, "id", DBType.Long, 0);
+		id.setRequired(true);
+		return id;
+	}
+
+	private static JavaField field(JavaType type, String name, DBType dbType, int maxLength) {
+		JavaField field = new JavaField(type, name);
+		field.setDbType(dbType);
+		field.setMaxLength(maxLength);
+		return field;
+	}
+
+	private static String database() {
+		return "schema_applier_" + (++databases);
+	}
+
+	private static SchemaApplier applier(String settings) {
+		return new SchemaApplier("jdbc:h2:mem:{database};DB_CLOSE_DELAY=-1" + settings, "sa", "");
+	}
+
+	private static void execute(String database, String sql) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + database, "sa", "");
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute(sql);
+			statement.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static int count(String database, String sql) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + database, "sa", "");
+		try {
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery(sql);
+			rs.next();
+			int count = rs.getInt(1);
+			statement.close();
+			return count;
+		} finally {
+			connection.close();
+		}
+	}
+}
\ No newline at end of file